@@ -0,0 +1,164 @@
+package quarkus.accounts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.ws.rs.core.MediaType;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON-B serialization of account db entities, as done for every response body.
+ *
+ * <p>{@code write*} benchmarks compare JSON-B with {@link AccountJsonWriter}, both writing into the same reusable
+ * stream, as response bodies are written. Compare their {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountJsonbBenchmark {
+
+  private Jsonb jsonb;
+
+  private AccountJpa accountJpa;
+
+  private AccountNoSql accountNoSql;
+
+  private AccountNoSqlPanache accountNoSqlPanache;
+
+  private List<AccountJpa> accountJpaList;
+
+  private Type accountJpaListType;
+
+  private AccountJsonWriter accountJsonWriter;
+
+  private ByteArrayOutputStream output;
+
+  @Setup
+  public void setup() throws Exception {
+    jsonb = JsonbBuilder.create();
+    accountJsonWriter = new AccountJsonWriter();
+    accountJsonWriter.enabled = true;
+    output = new ByteArrayOutputStream(64 * 1024);
+
+    accountJpa = new AccountJpa();
+    accountJpa.setId(1L);
+    accountJpa.setAccountNumber(123456789L);
+    accountJpa.setCustomerNumber(12345L);
+    accountJpa.setCustomerName("Debbie Hall");
+    accountJpa.setBalance(new BigDecimal("550.78"));
+    accountJpa.setVersion(0L);
+
+    accountNoSql = new AccountNoSql();
+    accountNoSql.set_id(new ObjectId().toString());
+    accountNoSql.setAccountNumber(123456789L);
+    accountNoSql.setCustomerNumber(12345L);
+    accountNoSql.setCustomerName("Debbie Hall");
+    accountNoSql.setBalance(new BigDecimal("550.78"));
+
+    accountNoSqlPanache = new AccountNoSqlPanache();
+    accountNoSqlPanache.setId(new ObjectId());
+    accountNoSqlPanache.setAccountNumber(123456789L);
+    accountNoSqlPanache.setCustomerNumber(12345L);
+    accountNoSqlPanache.setCustomerName("Debbie Hall");
+    accountNoSqlPanache.setBalance(new BigDecimal("550.78"));
+
+    // One page of accounts.
+    accountJpaList = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      AccountJpa account = new AccountJpa();
+      account.setId((long) i);
+      account.setAccountNumber(123456789L + i);
+      account.setCustomerNumber(12345L + i);
+      account.setCustomerName("Debbie Hall");
+      account.setBalance(new BigDecimal("550.78").add(BigDecimal.valueOf(i)));
+      account.setVersion(0L);
+      accountJpaList.add(account);
+    }
+    accountJpaListType = AccountJsonbBenchmark.class.getDeclaredField("accountJpaList").getGenericType();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    jsonb.close();
+  }
+
+  @Benchmark
+  public String serializeAccountJpa() {
+    return jsonb.toJson(accountJpa);
+  }
+
+  @Benchmark
+  public String serializeAccountNoSql() {
+    return jsonb.toJson(accountNoSql);
+  }
+
+  @Benchmark
+  public String serializeAccountNoSqlPanache() {
+    return jsonb.toJson(accountNoSqlPanache);
+  }
+
+  @Benchmark
+  public int writeAccountJpaByJsonb() {
+    output.reset();
+    jsonb.toJson(accountJpa, output);
+    return output.size();
+  }
+
+  @Benchmark
+  public int writeAccountJpa() throws IOException {
+    output.reset();
+    accountJsonWriter.writeTo(accountJpa, AccountJpa.class, AccountJpa.class, null, MediaType.APPLICATION_JSON_TYPE,
+        null, output);
+    return output.size();
+  }
+
+  @Benchmark
+  public int writeAccountNoSqlByJsonb() {
+    output.reset();
+    jsonb.toJson(accountNoSql, output);
+    return output.size();
+  }
+
+  @Benchmark
+  public int writeAccountNoSql() throws IOException {
+    output.reset();
+    accountJsonWriter.writeTo(accountNoSql, AccountNoSql.class, AccountNoSql.class, null,
+        MediaType.APPLICATION_JSON_TYPE, null, output);
+    return output.size();
+  }
+
+  @Benchmark
+  public int writeAccountJpaListByJsonb() {
+    output.reset();
+    jsonb.toJson(accountJpaList, accountJpaListType, output);
+    return output.size();
+  }
+
+  @Benchmark
+  public int writeAccountJpaList() throws IOException {
+    output.reset();
+    accountJsonWriter.writeTo(accountJpaList, ArrayList.class, accountJpaListType, null,
+        MediaType.APPLICATION_JSON_TYPE, null, output);
+    return output.size();
+  }
+}
@@ -0,0 +1,64 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BSON encoding and decoding of {@link AccountNoSql} by {@link AccountNoSqlCodec}, done for every read / written
+ * account.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountNoSqlMappingBenchmark {
+
+  private final AccountNoSqlCodec codec = new AccountNoSqlCodec();
+
+  private AccountNoSql account;
+
+  private BsonDocument document;
+
+  @Setup
+  public void setup() {
+    account = new AccountNoSql();
+    account.set_id(new ObjectId().toHexString());
+    account.setAccountNumber(123456789L);
+    account.setCustomerNumber(12345L);
+    account.setCustomerName("Debbie Hall");
+    account.setBalance(new BigDecimal("550.78"));
+
+    // Document as read from the db.
+    document = encodeAccount();
+  }
+
+  @Benchmark
+  public BsonDocument encodeAccount() {
+    BsonDocument encoded = new BsonDocument();
+    codec.encode(new BsonDocumentWriter(encoded), account, EncoderContext.builder().build());
+    return encoded;
+  }
+
+  @Benchmark
+  public AccountNoSql decodeAccount() {
+    return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+  }
+}
@@ -0,0 +1,108 @@
+package quarkus.accounts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Response body of a list of accounts in the offered formats: JSON, JSON compressed as by
+ * {@code quarkus.http.enable-compression} and CBOR.
+ *
+ * <p>Body sizes are printed on setup, time and allocation per response are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountResponseFormatBenchmark {
+
+  private List<AccountJpa> accounts;
+
+  private Type accountsType;
+
+  private AccountJsonWriter jsonWriter;
+
+  private AccountCborWriter cborWriter;
+
+  private Deflater deflater;
+
+  private ByteArrayOutputStream output;
+
+  @Setup
+  public void setup() throws Exception {
+    accounts = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      AccountJpa account = new AccountJpa();
+      account.setId((long) i);
+      account.setAccountNumber(123456789L + i);
+      account.setCustomerNumber(12345L + i % 100);
+      account.setCustomerName("Debbie Hall");
+      account.setBalance(new BigDecimal("550.78").add(BigDecimal.valueOf(i)));
+      account.setVersion((long) i % 7);
+      accounts.add(account);
+    }
+    accountsType = AccountResponseFormatBenchmark.class.getDeclaredField("accounts").getGenericType();
+
+    jsonWriter = new AccountJsonWriter();
+    jsonWriter.enabled = true;
+    cborWriter = new AccountCborWriter();
+    // Level of quarkus.http.compression-level.
+    deflater = new Deflater(1);
+    output = new ByteArrayOutputStream(256 * 1024);
+
+    System.out.printf("%nResponse body of %d accounts: JSON %d bytes, compressed JSON %d bytes, CBOR %d bytes%n",
+        accounts.size(), writeJson(), writeCompressedJson(), writeCbor());
+  }
+
+  @Benchmark
+  public int writeJson() throws IOException {
+    output.reset();
+    writeJson(output);
+    return output.size();
+  }
+
+  @Benchmark
+  public int writeCompressedJson() throws IOException {
+    output.reset();
+    deflater.reset();
+
+    try (OutputStream compressed = new DeflaterOutputStream(output, deflater, 8192)) {
+      writeJson(compressed);
+    }
+
+    return output.size();
+  }
+
+  @Benchmark
+  public int writeCbor() throws IOException {
+    output.reset();
+    cborWriter.writeTo(accounts, ArrayList.class, accountsType, null, MediaType.valueOf(
+        AccountCborWriter.APPLICATION_CBOR), new MultivaluedHashMap<>(), output);
+    return output.size();
+  }
+
+  private void writeJson(OutputStream stream) throws IOException {
+    jsonWriter.writeTo(accounts, ArrayList.class, accountsType, null, MediaType.APPLICATION_JSON_TYPE, null, stream);
+  }
+}
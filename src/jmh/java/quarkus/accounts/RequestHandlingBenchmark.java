@@ -0,0 +1,83 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-request work of the account endpoints outside of the db: parsing of deposit / withdrawal amount bodies, as
+ * {@link BigDecimal} before and as {@link Amount} now, and mapping of exceptions to error responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestHandlingBenchmark {
+
+  private String amount;
+
+  private byte[] amountBody;
+
+  private byte[] negativeAmountBody;
+
+  private ErrorMapper errorMapper;
+
+  private WebApplicationException notFound;
+
+  private NumberFormatException malformedAmount;
+
+  @Setup
+  public void setup() {
+    amount = "154.98";
+    amountBody = amount.getBytes(StandardCharsets.US_ASCII);
+    negativeAmountBody = "-154.98".getBytes(StandardCharsets.US_ASCII);
+    errorMapper = new ErrorMapper();
+    notFound = new WebApplicationException("Account with 11 does not exist.", 404);
+    malformedAmount = new NumberFormatException("Character a is neither a decimal digit number, decimal point, "
+        + "nor \"e\" notation exponential mark.");
+  }
+
+  @Benchmark
+  public BigDecimal parseAmount() {
+    return new BigDecimal(amount);
+  }
+
+  @Benchmark
+  public Amount readAmount() {
+    return Amount.parse(amountBody, 0, amountBody.length);
+  }
+
+  @Benchmark
+  public Response rejectNegativeAmount() {
+    try {
+      Amount.parse(negativeAmountBody, 0, negativeAmountBody.length);
+      throw new IllegalStateException("Negative amount was accepted.");
+    } catch (InvalidAmountException e) {
+      return errorMapper.toResponse(e);
+    }
+  }
+
+  @Benchmark
+  public Response mapNotFoundError() {
+    return errorMapper.toResponse(notFound);
+  }
+
+  @Benchmark
+  public Response mapUnexpectedError() {
+    return errorMapper.toResponse(malformedAmount);
+  }
+}
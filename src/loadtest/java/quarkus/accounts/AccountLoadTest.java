@@ -0,0 +1,342 @@
+package quarkus.accounts;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.mongodb.MongoTestResource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Load test comparing the three account persistence implementations under identical workloads.
+ *
+ * <p>Runs against H2 and an embedded MongoDB, started by the test resources, so no external database is needed.
+ * The embedded MongoDB binaries are downloaded on the first run, which needs network access.
+ * Each implementation gets its own set of accounts, then the same mix of create / read / deposit / withdrawal
+ * requests. Throughput, latency percentiles and the full latency distribution are printed and written to
+ * {@code target/load-test-report.txt}, the summary also as CSV to {@code target/load-test-report.csv}. The latency
+ * distribution of every resource is also written as HdrHistogram percentile output, e.g.
+ * {@code target/load-test-report-accounts.hgrm}.
+ *
+ * <p>Workload is configured by system properties:
+ * <ul>
+ *   <li>{@code loadtest.accounts} - number of accounts created before the measurement</li>
+ *   <li>{@code loadtest.requests} - number of measured requests per implementation</li>
+ *   <li>{@code loadtest.threads} - number of concurrent clients</li>
+ *   <li>{@code loadtest.skew} - account key skew, 1 is uniform, higher values concentrate requests
+ *     on fewer hot accounts</li>
+ *   <li>{@code loadtest.worker-threads} - maximum size of the worker pool, not limited by default</li>
+ * </ul>
+ */
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+@QuarkusTestResource(MongoTestResource.class)
+@TestProfile(AccountLoadTest.LoadTestProfile.class)
+class AccountLoadTest {
+
+  private static final List<String> RESOURCES =
+      List.of("/accounts", "/accounts-nosql", "/accounts-nosql-panache-repository");
+
+  private static final int ACCOUNTS = Integer.getInteger("loadtest.accounts", 1_000);
+
+  private static final int REQUESTS = Integer.getInteger("loadtest.requests", 20_000);
+
+  private static final int THREADS = Integer.getInteger("loadtest.threads", 16);
+
+  private static final double SKEW = Double.parseDouble(System.getProperty("loadtest.skew", "1.0"));
+
+  private static final Integer WORKER_THREADS = Integer.getInteger("loadtest.worker-threads");
+
+  /**
+   * Both MongoDB resources share one collection, so every resource gets its own range of account numbers.
+   */
+  private static final long ACCOUNT_NUMBER_RANGE = 100_000_000L;
+
+  @TestHTTPResource
+  URL baseUrl;
+
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  /**
+   * Enables MongoDB index creation, disabled by the default test configuration, and limits the worker pool to
+   * {@code loadtest.worker-threads}, if set.
+   */
+  public static class LoadTestProfile implements QuarkusTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+      Map<String, String> overrides = new HashMap<>();
+      overrides.put("account-service.mongodb.create-indexes", "true");
+
+      if (WORKER_THREADS != null) {
+        overrides.put("quarkus.thread-pool.max-threads", WORKER_THREADS.toString());
+      }
+
+      return overrides;
+    }
+  }
+
+  private enum Operation {
+    CREATE,
+    READ,
+    DEPOSIT,
+    WITHDRAWAL
+  }
+
+  @Test
+  void compareImplementations() throws Exception {
+    StringBuilder report = new StringBuilder(String.format(
+        "accounts=%d requests=%d threads=%d skew=%.2f%n%n%-36s %10s %10s %10s %10s %10s %8s%n",
+        ACCOUNTS, REQUESTS, THREADS, SKEW, "resource", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "errors"));
+    StringBuilder csv = new StringBuilder("resource,requests_per_second,p50_ms,p90_ms,p99_ms,max_ms,errors\n");
+    Map<String, Result> results = new LinkedHashMap<>();
+    StringBuilder histograms = new StringBuilder();
+
+    for (int i = 0; i < RESOURCES.size(); i++) {
+      String resource = RESOURCES.get(i);
+      long firstAccountNumber = (i + 1) * ACCOUNT_NUMBER_RANGE;
+
+      createAccounts(resource, firstAccountNumber, ACCOUNTS);
+
+      Result result = run(resource, firstAccountNumber);
+
+      report.append(String.format("%-36s %10.0f %10.2f %10.2f %10.2f %10.2f %8d%n",
+          resource, result.throughput(), result.percentile(50), result.percentile(90), result.percentile(99),
+          result.percentile(100), result.errors()));
+      csv.append(String.format(Locale.ROOT, "%s,%.0f,%.2f,%.2f,%.2f,%.2f,%d%n",
+          resource, result.throughput(), result.percentile(50), result.percentile(90), result.percentile(99),
+          result.percentile(100), result.errors()));
+      results.put(resource, result);
+
+      String histogram = result.histogram();
+      histograms.append(String.format("%nLatency distribution of %s:%n", resource)).append(histogram);
+      Files.writeString(Path.of("target", reportName() + "-" + resource.substring(1) + ".hgrm"), histogram);
+
+      assertThat(resource + " failed requests", result.errors(), equalTo(0L));
+    }
+
+    compare(results, report);
+    report.append(histograms);
+
+    System.out.println(report);
+    Files.writeString(Path.of("target", reportName() + ".txt"), report);
+    Files.writeString(Path.of("target", reportName() + ".csv"), csv);
+  }
+
+  /**
+   * Name of the report files in the target directory, without extension.
+   */
+  protected String reportName() {
+    return "load-test-report";
+  }
+
+  /**
+   * Name of the report files of another run the results are compared with, {@code null} to compare with none.
+   */
+  protected String baselineReportName() {
+    return null;
+  }
+
+  /**
+   * Append the change of throughput and latency against the CSV report of the baseline run to the report.
+   */
+  private void compare(Map<String, Result> results, StringBuilder report) throws IOException {
+    if (baselineReportName() == null) {
+      return;
+    }
+
+    Path baselineReport = Path.of("target", baselineReportName() + ".csv");
+
+    if (!Files.exists(baselineReport)) {
+      report.append(String.format("%nNo %s to compare with, run AccountLoadTest first.%n", baselineReport));
+      return;
+    }
+
+    report.append(String.format("%nChange against %s:%n%-36s %10s %10s %10s%n",
+        baselineReport, "resource", "req/s", "p50", "p99"));
+
+    List<String> lines = Files.readAllLines(baselineReport);
+
+    // Header line is skipped.
+    for (String line : lines.subList(1, lines.size())) {
+      String[] columns = line.split(",");
+      Result result = results.get(columns[0]);
+
+      if (result != null) {
+        report.append(String.format("%-36s %+9.1f%% %+9.1f%% %+9.1f%%%n", columns[0],
+            change(Double.parseDouble(columns[1]), result.throughput()),
+            change(Double.parseDouble(columns[2]), result.percentile(50)),
+            change(Double.parseDouble(columns[4]), result.percentile(99))));
+      }
+    }
+  }
+
+  private static double change(double before, double after) {
+    return (after - before) / before * 100;
+  }
+
+  private void createAccounts(String resource, long firstAccountNumber, int count) throws Exception {
+    String body = LongStream.range(firstAccountNumber, firstAccountNumber + count)
+        .mapToObj(AccountLoadTest::accountJson)
+        .collect(Collectors.joining("\n"));
+
+    HttpResponse<String> response = send(HttpRequest.newBuilder(uri(resource + "/batch"))
+        .header("Content-Type", NdjsonOutput.APPLICATION_NDJSON)
+        .POST(HttpRequest.BodyPublishers.ofString(body)));
+
+    assertThat(resource + " batch create", response.statusCode(), equalTo(200));
+  }
+
+  private Result run(String resource, long firstAccountNumber) throws Exception {
+    // Accounts created during the measurement get numbers after the existing ones.
+    AtomicLong nextAccountNumber = new AtomicLong(firstAccountNumber + ACCOUNTS);
+    AtomicLong errors = new AtomicLong();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<long[]>> clients = new ArrayList<>(THREADS);
+
+    long start = System.nanoTime();
+
+    for (int t = 0; t < THREADS; t++) {
+      int requests = REQUESTS / THREADS + (t < REQUESTS % THREADS ? 1 : 0);
+      clients.add(executor.submit(() -> {
+        long[] latencies = new long[requests];
+        for (int r = 0; r < requests; r++) {
+          long requestStart = System.nanoTime();
+          if (!request(resource, firstAccountNumber, nextAccountNumber)) {
+            errors.incrementAndGet();
+          }
+          latencies[r] = System.nanoTime() - requestStart;
+        }
+        return latencies;
+      }));
+    }
+
+    List<long[]> latencies = new ArrayList<>(THREADS);
+    for (Future<long[]> clientLatencies : clients) {
+      latencies.add(clientLatencies.get());
+    }
+
+    long elapsed = System.nanoTime() - start;
+
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+
+    long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+    return new Result(all, elapsed, errors.get());
+  }
+
+  /**
+   * Send one request of randomly chosen operation.
+   *
+   * @return whether the request succeeded
+   */
+  private boolean request(String resource, long firstAccountNumber, AtomicLong nextAccountNumber) throws Exception {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long accountNumber = firstAccountNumber + (long) (ACCOUNTS * Math.pow(random.nextDouble(), SKEW));
+
+    HttpResponse<String> response = switch (operation(random.nextInt(100))) {
+      case CREATE -> send(HttpRequest.newBuilder(uri(resource))
+          .header("Content-Type", "application/json")
+          .POST(HttpRequest.BodyPublishers.ofString(accountJson(nextAccountNumber.getAndIncrement()))));
+      case READ -> send(HttpRequest.newBuilder(uri(resource + "/" + accountNumber)).GET());
+      case DEPOSIT -> send(HttpRequest.newBuilder(uri(resource + "/" + accountNumber + "/deposit"))
+          .header("Content-Type", "application/json")
+          .PUT(HttpRequest.BodyPublishers.ofString("1.25")));
+      case WITHDRAWAL -> send(HttpRequest.newBuilder(uri(resource + "/" + accountNumber + "/withdrawal"))
+          .header("Content-Type", "application/json")
+          .PUT(HttpRequest.BodyPublishers.ofString("1.00")));
+    };
+
+    return response.statusCode() < 300;
+  }
+
+  /**
+   * Mix of operations: 10 % create, 60 % read, 15 % deposit, 15 % withdrawal.
+   */
+  private static Operation operation(int percent) {
+    if (percent < 10) {
+      return Operation.CREATE;
+    }
+    if (percent < 70) {
+      return Operation.READ;
+    }
+    if (percent < 85) {
+      return Operation.DEPOSIT;
+    }
+    return Operation.WITHDRAWAL;
+  }
+
+  private static String accountJson(long accountNumber) {
+    return "{\"accountNumber\":" + accountNumber + ",\"customerNumber\":" + (accountNumber % 1000)
+        + ",\"customerName\":\"Load Test\",\"balance\":1000.00,\"accountStatus\":\"OPEN\"}";
+  }
+
+  private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+    return client.send(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+  }
+
+  private URI uri(String path) {
+    return URI.create(baseUrl.toString().replaceAll("/$", "") + path);
+  }
+
+  /**
+   * Latencies (sorted, in nanoseconds) of all measured requests.
+   */
+  private record Result(long[] latencies, long elapsedNanos, long errors) {
+
+    double throughput() {
+      return latencies.length / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    double percentile(double percentile) {
+      int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+      return latencies[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    /**
+     * Full latency distribution in milliseconds, in the percentile distribution format of HdrHistogram.
+     */
+    String histogram() {
+      Histogram histogram = new Histogram(3);
+      for (long latency : latencies) {
+        histogram.recordValue(latency);
+      }
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      histogram.outputPercentileDistribution(new PrintStream(out, true, StandardCharsets.UTF_8), 1_000_000.0);
+      return out.toString(StandardCharsets.UTF_8);
+    }
+  }
+}
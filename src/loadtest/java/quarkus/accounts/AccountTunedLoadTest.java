@@ -0,0 +1,79 @@
+package quarkus.accounts;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.mongodb.MongoTestResource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link AccountLoadTest} with the pool and batch settings of the {@code perf} profile which apply to H2 and
+ * the embedded MongoDB. Its report, {@code target/load-test-report-perf.txt}, is to be compared with the report
+ * of {@link AccountLoadTest}, run with the same workload. When that report is present, the change of throughput
+ * and latency against it is appended.
+ *
+ * <p>PostgreSQL driver settings of the profile can't be measured here.
+ */
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+@QuarkusTestResource(MongoTestResource.class)
+@TestProfile(AccountTunedLoadTest.TunedLoadTestProfile.class)
+class AccountTunedLoadTest extends AccountLoadTest {
+
+  private static final String PERF_PROFILE_PREFIX = "%perf.";
+
+  /**
+   * Settings of the {@code perf} profile which don't apply to H2 or would drop the test schema and data.
+   */
+  private static final List<String> EXCLUDED_SETTINGS = List.of(
+      "quarkus.datasource.jdbc.additional-jdbc-properties.",
+      "quarkus.hibernate-orm.database.generation",
+      "quarkus.hibernate-orm.sql-load-script");
+
+  /**
+   * Settings of the {@code perf} profile read from {@code application.properties}, the test datasource of
+   * the {@code test} profile is kept.
+   */
+  public static class TunedLoadTestProfile extends LoadTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+      Map<String, String> overrides = new HashMap<>(super.getConfigOverrides());
+      Properties properties = new Properties();
+
+      try (InputStream in = AccountTunedLoadTest.class.getResourceAsStream("/application.properties")) {
+        properties.load(in);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      for (String key : properties.stringPropertyNames()) {
+        if (key.startsWith(PERF_PROFILE_PREFIX)) {
+          String name = key.substring(PERF_PROFILE_PREFIX.length());
+          if (EXCLUDED_SETTINGS.stream().noneMatch(name::startsWith)) {
+            overrides.put(name, properties.getProperty(key));
+          }
+        }
+      }
+
+      return overrides;
+    }
+  }
+
+  @Override
+  protected String reportName() {
+    return "load-test-report-perf";
+  }
+
+  @Override
+  protected String baselineReportName() {
+    return super.reportName();
+  }
+}
@@ -0,0 +1,56 @@
+package quarkus.accounts;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.mongodb.MongoTestResource;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+/**
+ * {@link AccountLoadTest} with the account reads, deposits and withdrawals of {@code /accounts} and
+ * {@code /accounts-nosql} running on virtual threads. Its report, {@code target/load-test-report-virtual.txt}, ends
+ * with the change against the report of {@link AccountLoadTest}.
+ *
+ * <p>Run both with {@code loadtest.threads} above {@code loadtest.worker-threads}: on worker threads the requests above
+ * the worker pool size queue, on virtual threads they wait for the db concurrently. The other resources run on worker
+ * threads in both runs. Runs on JDK 21 only.
+ */
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+@QuarkusTestResource(MongoTestResource.class)
+@TestProfile(AccountVirtualThreadLoadTest.VirtualThreadLoadTestProfile.class)
+@EnabledIf("virtualThreadsAvailable")
+class AccountVirtualThreadLoadTest extends AccountLoadTest {
+
+  /**
+   * Blocking endpoints of the measured mix running on virtual threads.
+   */
+  public static class VirtualThreadLoadTestProfile extends LoadTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+      Map<String, String> overrides = new HashMap<>(super.getConfigOverrides());
+      overrides.put("account-service.virtual-threads.endpoints", String.join(",",
+          "AccountJpaResource.getAccount", "AccountJpaResource.deposit", "AccountJpaResource.withdrawal",
+          "AccountNoSqlResource.getAccount", "AccountNoSqlResource.deposit", "AccountNoSqlResource.withdrawal"));
+      return overrides;
+    }
+  }
+
+  static boolean virtualThreadsAvailable() {
+    return Runtime.version().feature() >= 21;
+  }
+
+  @Override
+  protected String reportName() {
+    return "load-test-report-virtual";
+  }
+
+  @Override
+  protected String baselineReportName() {
+    return super.reportName();
+  }
+}
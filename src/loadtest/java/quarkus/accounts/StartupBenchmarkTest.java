@@ -0,0 +1,152 @@
+package quarkus.accounts;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares startup of the JVM and the native build: time to the first served request and resident memory (RSS)
+ * right after it.
+ *
+ * <p>Starts the packaged application as a separate process, the same way it's started in a container, and measures
+ * from the process start until {@code GET /accounts/page?size=1} succeeds, so Hibernate and datasource startup are
+ * included. Builds which are not packaged are skipped. PostgreSQL and MongoDB configured by
+ * {@code application.properties} must be running.
+ *
+ * <p>Number of startups per build is configured by system property {@code startup.runs}. Medians are printed and
+ * written to {@code target/startup-report.txt}.
+ */
+class StartupBenchmarkTest {
+
+  private static final int RUNS = Integer.getInteger("startup.runs", 5);
+
+  private static final int PORT = 8089;
+
+  private static final URI FIRST_REQUEST = URI.create("http://localhost:" + PORT + "/accounts/page?size=1");
+
+  private static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+  private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+  @Test
+  void compareStartup() throws Exception {
+    Path jvmApplication = Path.of("target", "quarkus-app", "quarkus-run.jar");
+    Optional<Path> nativeApplication = findNativeExecutable();
+
+    assumeTrue(Files.exists(jvmApplication) || nativeApplication.isPresent(), "No packaged application found.");
+
+    StringBuilder report = new StringBuilder(String.format("runs=%d%n%n%-8s %22s %10s%n",
+        RUNS, "build", "first request ms", "RSS MiB"));
+
+    if (Files.exists(jvmApplication)) {
+      report.append(measure("jvm", List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+          "-Dquarkus.http.port=" + PORT, "-jar", jvmApplication.toString())));
+    }
+
+    if (nativeApplication.isPresent()) {
+      report.append(measure("native", List.of(nativeApplication.get().toString(), "-Dquarkus.http.port=" + PORT)));
+    }
+
+    System.out.println(report);
+    Files.writeString(Path.of("target", "startup-report.txt"), report);
+  }
+
+  private String measure(String build, List<String> command) throws Exception {
+    long[] firstRequestMillis = new long[RUNS];
+    long[] rssKib = new long[RUNS];
+
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.nanoTime();
+      Process process = new ProcessBuilder(command)
+          .redirectErrorStream(true)
+          .redirectOutput(Path.of("target", "startup-" + build + ".log").toFile())
+          .start();
+
+      try {
+        awaitFirstRequest(process);
+        firstRequestMillis[run] = (System.nanoTime() - start) / 1_000_000;
+        rssKib[run] = readRssKib(process.pid());
+      } finally {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+          process.destroyForcibly();
+        }
+      }
+    }
+
+    long rss = median(rssKib);
+
+    return String.format("%-8s %22d %10s%n", build, median(firstRequestMillis),
+        rss < 0 ? "n/a" : String.format("%.1f", rss / 1024.0));
+  }
+
+  private void awaitFirstRequest(Process process) throws Exception {
+    long deadline = System.nanoTime() + TIMEOUT.toNanos();
+    HttpRequest request = HttpRequest.newBuilder(FIRST_REQUEST).GET().build();
+
+    while (System.nanoTime() < deadline) {
+      if (!process.isAlive()) {
+        throw new IllegalStateException(
+            "Application exited with " + process.exitValue() + ", see target/startup-*.log");
+      }
+
+      try {
+        if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+          return;
+        }
+      } catch (IOException e) {
+        // Not listening yet.
+      }
+
+      Thread.sleep(5);
+    }
+
+    throw new IllegalStateException("Application didn't serve the first request within " + TIMEOUT + ".");
+  }
+
+  /**
+   * Resident memory of the process, read from {@code /proc}, -1 where it's not available.
+   */
+  private static long readRssKib(long pid) throws IOException {
+    Path status = Path.of("/proc", String.valueOf(pid), "status");
+
+    if (!Files.exists(status)) {
+      return -1;
+    }
+
+    // Line format: "VmRSS:	  123456 kB"
+    return Files.readAllLines(status).stream()
+        .filter(line -> line.startsWith("VmRSS:"))
+        .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+        .findFirst()
+        .orElse(-1L);
+  }
+
+  private static Optional<Path> findNativeExecutable() {
+    try (var files = Files.list(Path.of("target"))) {
+      return files.filter(file -> file.getFileName().toString().endsWith("-runner"))
+          .filter(Files::isExecutable)
+          .findFirst();
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static long median(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+}
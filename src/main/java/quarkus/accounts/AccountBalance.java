@@ -0,0 +1,22 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Balance of an account at a point in time.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountBalance {
+
+  private Long accountNumber;
+
+  private Instant at;
+
+  private BigDecimal balance;
+}
@@ -0,0 +1,271 @@
+package quarkus.accounts;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.Collection;
+
+/**
+ * Writes accounts, lists and pages of accounts to a response stream without reflection.
+ *
+ * <p>Values are encoded into a reusable byte buffer, which is flushed to the stream every {@value #BUFFER_SIZE}
+ * bytes. Subclasses implement the format: JSON by {@link AccountJsonWriter}, CBOR by {@link AccountCborWriter}.
+ *
+ * <p>Accounts have the same properties as written by JSON-B: properties in lexicographical order, {@code null}
+ * properties omitted. Properties added to the accounts must be added here too.
+ */
+abstract class AccountEncoder {
+
+  static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Property names of accounts and pages.
+   */
+  enum Field {
+    ID("id"),
+    MONGO_ID("_id"),
+    ACCOUNT_NUMBER("accountNumber"),
+    ACCOUNT_STATUS("accountStatus"),
+    BALANCE("balance"),
+    CUSTOMER_NAME("customerName"),
+    CUSTOMER_NUMBER("customerNumber"),
+    VERSION("version"),
+    ACCOUNTS("accounts"),
+    NEXT_CURSOR("nextCursor");
+
+    final String propertyName;
+
+    Field(String propertyName) {
+      this.propertyName = propertyName;
+    }
+  }
+
+  protected final byte[] buffer = new byte[BUFFER_SIZE];
+
+  protected int position;
+
+  private OutputStream stream;
+
+  /**
+   * Whether the entity is an account, or a list or page of accounts.
+   *
+   * @param type        class of the entity
+   * @param genericType declared type of the entity, item type of lists and pages is known only from it
+   */
+  static boolean isWriteable(Class<?> type, Type genericType) {
+    if (isAccount(type)) {
+      return true;
+    }
+
+    return (type == AccountPage.class || Collection.class.isAssignableFrom(type))
+        && genericType instanceof ParameterizedType parameterized
+        && parameterized.getActualTypeArguments()[0] instanceof Class<?> itemType
+        && isAccount(itemType);
+  }
+
+  /**
+   * Write the entity accepted by {@link #isWriteable(Class, Type)} to the stream.
+   */
+  void write(Object entity, OutputStream stream) throws IOException {
+    this.stream = stream;
+    position = 0;
+    reset();
+
+    try {
+      if (entity instanceof AccountPage<?> page) {
+        beginObject();
+        name(Field.ACCOUNTS);
+        writeAccounts(page.getAccounts());
+        stringField(Field.NEXT_CURSOR, page.getNextCursor());
+        endObject();
+      } else if (entity instanceof Collection<?> accounts) {
+        writeAccounts(accounts);
+      } else {
+        writeAccount(entity);
+      }
+
+      flush();
+    } finally {
+      this.stream = null;
+    }
+  }
+
+  /**
+   * Reset the format state before an entity is written.
+   */
+  protected abstract void reset();
+
+  protected abstract void beginObject() throws IOException;
+
+  protected abstract void endObject() throws IOException;
+
+  protected abstract void beginArray(int size) throws IOException;
+
+  protected abstract void endArray() throws IOException;
+
+  protected abstract void name(Field field) throws IOException;
+
+  protected abstract void nullValue() throws IOException;
+
+  protected abstract void longValue(long value) throws IOException;
+
+  protected abstract void decimalValue(BigDecimal value) throws IOException;
+
+  protected abstract void stringValue(String value) throws IOException;
+
+  /**
+   * Make room for the given number of bytes in the buffer.
+   */
+  protected void ensure(int length) throws IOException {
+    if (position + length > buffer.length) {
+      flush();
+    }
+  }
+
+  /**
+   * Write the char at the index as UTF-8.
+   *
+   * @return index of the next char
+   */
+  protected int utf8(String value, int index) throws IOException {
+    ensure(4);
+    char c = value.charAt(index);
+
+    if (c < 0x80) {
+      buffer[position++] = (byte) c;
+    } else if (c < 0x800) {
+      buffer[position++] = (byte) (0xc0 | c >> 6);
+      buffer[position++] = (byte) (0x80 | c & 0x3f);
+    } else if (!Character.isSurrogate(c)) {
+      buffer[position++] = (byte) (0xe0 | c >> 12);
+      buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+      buffer[position++] = (byte) (0x80 | c & 0x3f);
+    } else if (Character.isHighSurrogate(c) && index + 1 < value.length()
+        && Character.isLowSurrogate(value.charAt(index + 1))) {
+      int codePoint = Character.toCodePoint(c, value.charAt(++index));
+      buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+      buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+      buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+      buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+    } else {
+      // Unpaired surrogate, replaced the same way as by the UTF-8 encoder of JSON-B.
+      buffer[position++] = '?';
+    }
+
+    return index + 1;
+  }
+
+  /**
+   * Number of bytes of the text encoded by {@link #utf8(String, int)}.
+   */
+  protected static int utf8Length(String value) {
+    int length = 0;
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (!Character.isSurrogate(c)) {
+        length += 3;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length++;
+      }
+    }
+
+    return length;
+  }
+
+  private static boolean isAccount(Class<?> type) {
+    return type == AccountJpa.class || type == AccountNoSql.class || type == AccountNoSqlPanache.class
+        || type == AccountLedger.class;
+  }
+
+  private void writeAccounts(Collection<?> accounts) throws IOException {
+    if (accounts == null) {
+      nullValue();
+      return;
+    }
+
+    beginArray(accounts.size());
+
+    for (Object account : accounts) {
+      writeAccount(account);
+    }
+
+    endArray();
+  }
+
+  private void writeAccount(Object account) throws IOException {
+    if (account instanceof AccountJpa jpa) {
+      beginObject();
+      writeCommon(jpa.getAccountNumber(), jpa.getAccountStatus(), jpa.getBalance(), jpa.getCustomerName(),
+          jpa.getCustomerNumber());
+      longField(Field.ID, jpa.getId());
+      longField(Field.VERSION, jpa.getVersion());
+      endObject();
+    } else if (account instanceof AccountNoSql noSql) {
+      beginObject();
+      stringField(Field.MONGO_ID, noSql.get_id());
+      writeCommon(noSql.getAccountNumber(), noSql.getAccountStatus(), noSql.getBalance(), noSql.getCustomerName(),
+          noSql.getCustomerNumber());
+      endObject();
+    } else if (account instanceof AccountNoSqlPanache panache) {
+      beginObject();
+      writeCommon(panache.getAccountNumber(), panache.getAccountStatus(), panache.getBalance(),
+          panache.getCustomerName(), panache.getCustomerNumber());
+      stringField(Field.ID, panache.getId() == null ? null : panache.getId().toHexString());
+      endObject();
+    } else if (account instanceof AccountLedger ledger) {
+      beginObject();
+      writeCommon(ledger.getAccountNumber(), ledger.getAccountStatus(), ledger.getBalance(), ledger.getCustomerName(),
+          ledger.getCustomerNumber());
+      endObject();
+    } else {
+      nullValue();
+    }
+  }
+
+  private void writeCommon(Long accountNumber, AccountStatus accountStatus, BigDecimal balance, String customerName,
+      Long customerNumber) throws IOException {
+    longField(Field.ACCOUNT_NUMBER, accountNumber);
+    stringField(Field.ACCOUNT_STATUS, accountStatus == null ? null : accountStatus.name());
+    decimalField(Field.BALANCE, balance);
+    stringField(Field.CUSTOMER_NAME, customerName);
+    longField(Field.CUSTOMER_NUMBER, customerNumber);
+  }
+
+  private void longField(Field field, Long value) throws IOException {
+    if (value != null) {
+      name(field);
+      longValue(value);
+    }
+  }
+
+  private void decimalField(Field field, BigDecimal value) throws IOException {
+    if (value != null) {
+      name(field);
+      decimalValue(value);
+    }
+  }
+
+  private void stringField(Field field, String value) throws IOException {
+    if (value != null) {
+      name(field);
+      stringValue(value);
+    }
+  }
+
+  private void flush() throws IOException {
+    stream.write(buffer, 0, position);
+    position = 0;
+  }
+}
@@ -0,0 +1,30 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import javax.ws.rs.QueryParam;
+import lombok.Data;
+
+/**
+ * Account query conditions, taken from query parameters. Conditions which are not set don't filter.
+ */
+@Data
+public class AccountFilter {
+
+  @QueryParam("status")
+  private AccountStatus status;
+
+  @QueryParam("customerNumber")
+  private Long customerNumber;
+
+  /**
+   * Inclusive lower bound of the balance.
+   */
+  @QueryParam("minBalance")
+  private BigDecimal minBalance;
+
+  /**
+   * Inclusive upper bound of the balance.
+   */
+  @QueryParam("maxBalance")
+  private BigDecimal maxBalance;
+}
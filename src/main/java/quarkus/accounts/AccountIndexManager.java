@@ -0,0 +1,46 @@
+package quarkus.accounts;
+
+import io.quarkus.runtime.StartupEvent;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Ensures account indexes exist on application startup.
+ *
+ * <ul>
+ *   <li>SQL indexes are declared on {@link AccountJpa} and created by Hibernate together with the table.</li>
+ *   <li>MongoDB indexes are created here, because the collection is created lazily by the first insert.</li>
+ *   <li>TTL index of persisted idempotency keys is created here too, see {@link IdempotencyStore}.</li>
+ * </ul>
+ */
+@ApplicationScoped
+public class AccountIndexManager {
+
+  private static final Logger LOG = Logger.getLogger(AccountIndexManager.class);
+
+  @Inject
+  AccountNoSqlRepository accountNoSqlRepository;
+
+  @Inject
+  IdempotencyStore idempotencyStore;
+
+  @ConfigProperty(name = "account-service.mongodb.create-indexes")
+  boolean createMongoIndexes;
+
+  void onStart(@Observes StartupEvent event) {
+    if (!createMongoIndexes) {
+      LOG.info("MongoDB account indexes creation is disabled.");
+      return;
+    }
+
+    long start = System.nanoTime();
+
+    accountNoSqlRepository.createIndexes();
+    idempotencyStore.createIndexes();
+
+    LOG.infof("MongoDB account indexes ensured in %d ms.", (System.nanoTime() - start) / 1_000_000);
+  }
+}
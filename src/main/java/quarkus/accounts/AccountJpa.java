@@ -4,13 +4,22 @@ import java.math.BigDecimal;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 
 @Entity
-@Table(name = "account")
+// Accounts are looked up by account number, so it's indexed to avoid full table scans.
+@Table(name = "account", indexes = {
+    @Index(name = "account_account_number_idx", columnList = "accountNumber", unique = true),
+    @Index(name = "account_customer_number_idx", columnList = "customerNumber"),
+    // Filtered pages of accounts, e.g. overdrawn accounts, are read in id order.
+    @Index(name = "account_status_id_idx", columnList = "accountStatus, id")
+})
 @Data
 @NoArgsConstructor
 public class AccountJpa {
@@ -19,8 +28,11 @@ public class AccountJpa {
 
   // When using JPA, the fields can be marked private instead of public.
 
+  // Pooled sequence allocation - one sequence call provides ids for 50 inserts, so batch inserts
+  // don't need a db round trip per id.
   @Id
-  @GeneratedValue
+  @GeneratedValue(generator = "account_id_generator")
+  @SequenceGenerator(name = "account_id_generator", sequenceName = "hibernate_sequence", allocationSize = 50)
   private Long id;
 
   @NonNull
@@ -38,6 +50,11 @@ public class AccountJpa {
   @NonNull
   private AccountStatus accountStatus = AccountStatus.OPEN;
 
+  // Optimistic locking - concurrent read-modify-write updates of the same account fail instead of overwriting
+  // each other.
+  @Version
+  private Long version;
+
   public void markOverdrawn() {
     accountStatus = AccountStatus.OVERDRAWN;
   }
@@ -1,11 +1,503 @@
 package quarkus.accounts;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CacheResult;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Sort;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import javax.transaction.Transactional;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jpa.QueryHints;
 
 @ApplicationScoped
 public class AccountJpaRepository implements PanacheRepository<AccountJpa> {
+
+  /**
+   * SQL state of unique key violations, the same in PostgreSQL and H2.
+   */
+  private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+
+  /**
+   * Number of rows fetched from the db by one JDBC round trip when streaming accounts.
+   */
+  private static final int STREAM_FETCH_SIZE = 500;
+
+  static final String ACCOUNT_CACHE = "account-jpa";
+
+  @Inject
+  @CacheName(ACCOUNT_CACHE)
+  Cache accountCache;
+
+  @Inject
+  TransactionSynchronizationRegistry transactionRegistry;
+
+  @Inject
+  MeterRegistry registry;
+
+  @Inject
+  AccountMovementJpaRepository movementRepository;
+
+  @Inject
+  AccountSnapshotJpaRepository snapshotRepository;
+
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
   public AccountJpa findByAccountNumber(Long accountNumber) {
     return find("accountNumber = ?1", accountNumber).firstResult();
   }
+
+  /**
+   * Find account with given account number through the account cache.
+   *
+   * <p>Returned account is shared by all callers, so it must be used only for reading. For updates use
+   * {@link #findByAccountNumber(Long)}.
+   *
+   * @param accountNumber unique account number
+   */
+  @CacheResult(cacheName = ACCOUNT_CACHE)
+  public AccountJpa findCachedByAccountNumber(Long accountNumber) {
+    return findByAccountNumber(accountNumber);
+  }
+
+  /**
+   * Remove the account from the account cache.
+   *
+   * <p>Within a transaction the account is removed after the transaction completes. Otherwise, a concurrent read
+   * between the update and the commit could put the old account back into the cache.
+   *
+   * @param accountNumber unique account number
+   */
+  public void invalidateCached(Long accountNumber) {
+    if (transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+      accountCache.invalidate(accountNumber).await().indefinitely();
+      return;
+    }
+
+    transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+      @Override
+      public void beforeCompletion() {
+        // Nothing to do before commit.
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        accountCache.invalidate(accountNumber).await().indefinitely();
+      }
+    });
+  }
+
+  /**
+   * Find which of the given account numbers already exist.
+   *
+   * @param accountNumbers account numbers to be checked
+   * @return existing account numbers
+   */
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public Set<Long> findExistingAccountNumbers(Collection<Long> accountNumbers) {
+    if (accountNumbers.isEmpty()) {
+      return Set.of();
+    }
+
+    return new HashSet<>(getEntityManager()
+        .createQuery("select a.accountNumber from AccountJpa a where a.accountNumber in ?1", Long.class)
+        .setParameter(1, accountNumbers)
+        .getResultList());
+  }
+
+  /**
+   * Persist all accounts in one transaction.
+   *
+   * <p>Inserts are sent in JDBC batches ({@code quarkus.hibernate-orm.jdbc.statement-batch-size}) and the
+   * persistence context is cleared afterwards, so persisted accounts don't stay in memory.
+   *
+   * @param accounts new accounts
+   */
+  @Transactional
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public void persistChunk(List<AccountJpa> accounts) {
+    // Not found accounts may be cached too.
+    accounts.forEach(account -> invalidateCached(account.getAccountNumber()));
+
+    persist(accounts);
+    flush();
+    getEntityManager().clear();
+  }
+
+  /**
+   * Whether the insert failed on the unique index of account number, i.e. the account exists already.
+   */
+  static boolean isDuplicateKey(PersistenceException e) {
+    // Account number is the only unique key of accounts besides the generated id.
+    return e.getCause() instanceof ConstraintViolationException violation
+        && UNIQUE_VIOLATION_SQL_STATE.equals(violation.getSQLState());
+  }
+
+  /**
+   * Add funds to the account by one UPDATE statement, without loading the account before the update.
+   *
+   * <p>The deposit is recorded in the account journal in the same transaction.
+   *
+   * @param accountNumber unique account number
+   * @param amount        deposited amount
+   * @return updated account, {@code null} if the account doesn't exist
+   */
+  @Transactional
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public AccountJpa deposit(Long accountNumber, BigDecimal amount) {
+    invalidateCached(accountNumber);
+
+    if (update("balance = balance + ?1, version = version + 1 where accountNumber = ?2", amount, accountNumber) == 0) {
+      return null;
+    }
+
+    return journal(accountNumber, TransactionType.DEPOSIT, amount);
+  }
+
+  /**
+   * Withdraw funds from the account by one UPDATE statement, without loading the account before the update.
+   *
+   * <p>Withdrawal is not applied to an overdrawn account. The status is checked by the UPDATE statement itself,
+   * so concurrent updates of the same account can't bypass it. The withdrawal is recorded in the account journal
+   * in the same transaction.
+   *
+   * @param accountNumber unique account number
+   * @param amount        withdrawn amount
+   * @return updated account, {@code null} if the account doesn't exist or it's overdrawn
+   */
+  @Transactional
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public AccountJpa withdraw(Long accountNumber, BigDecimal amount) {
+    invalidateCached(accountNumber);
+
+    if (update("balance = balance - ?1, version = version + 1 where accountNumber = ?2 and accountStatus <> ?3",
+        amount, accountNumber, AccountStatus.OVERDRAWN) == 0) {
+      return null;
+    }
+
+    return journal(accountNumber, TransactionType.WITHDRAWAL, amount);
+  }
+
+  private AccountJpa journal(Long accountNumber, TransactionType type, BigDecimal amount) {
+    // UPDATE locks the row until the end of the transaction, so the account read after it contains this movement
+    // and no other concurrent change.
+    AccountJpa account = findByAccountNumber(accountNumber);
+    Instant now = Instant.now();
+
+    movementRepository.persist(new AccountMovementJpa(accountNumber, type, amount, account.getVersion(), now));
+    snapshotRepository.snapshotIfDue(accountNumber, account.getVersion(), account.getBalance(), 1, now);
+
+    return account;
+  }
+
+  /**
+   * Close the account and take snapshot of its zeroed balance.
+   *
+   * @param accountNumber unique account number
+   * @return false if the account doesn't exist
+   */
+  @Transactional
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public boolean close(Long accountNumber) {
+    invalidateCached(accountNumber);
+
+    // One UPDATE statement, like deposits and withdrawals, so a concurrent balance change can't fail the close
+    // by an optimistic lock conflict.
+    if (update("accountStatus = ?1, balance = ?2, version = version + 1 where accountNumber = ?3",
+        AccountStatus.CLOSED, BigDecimal.ZERO, accountNumber) == 0) {
+      return false;
+    }
+
+    // UPDATE locks the row until the end of the transaction, the snapshot is taken at the version it produced.
+    AccountJpa account = findByAccountNumber(accountNumber);
+    snapshotRepository.persist(
+        new AccountSnapshotJpa(accountNumber, account.getVersion(), account.getBalance(), Instant.now()));
+
+    return true;
+  }
+
+  /**
+   * Find the account balance at the given time.
+   *
+   * <p>Balance is computed from the last snapshot taken up to the time plus the movements posted after the snapshot.
+   * Without such a snapshot, movements posted after the time are subtracted from the next snapshot or from the
+   * current balance. Only movements since the nearest snapshot are read either way.
+   *
+   * @param accountNumber unique account number
+   * @param at            point in time
+   * @return balance, {@code null} if the account doesn't exist
+   */
+  @Transactional
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public BigDecimal findBalanceAt(Long accountNumber, Instant at) {
+    AccountJpa account = findByAccountNumber(accountNumber);
+
+    if (account == null) {
+      return null;
+    }
+
+    AccountSnapshotJpa last = snapshotRepository.findLastTakenUntil(accountNumber, at);
+
+    if (last != null) {
+      return last.getBalance().add(movementRepository.sumAfterVersion(accountNumber, last.getAccountVersion(), at));
+    }
+
+    AccountSnapshotJpa next = snapshotRepository.findFirstTakenAfter(accountNumber, at);
+    BigDecimal balance = next == null ? account.getBalance() : next.getBalance();
+    long version = next == null ? account.getVersion() : next.getAccountVersion();
+
+    return balance.subtract(movementRepository.sumPostedAfter(accountNumber, at, version));
+  }
+
+  /**
+   * Find statuses of the given accounts.
+   *
+   * @param accountNumbers account numbers
+   * @return statuses of existing accounts by account number
+   */
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public Map<Long, AccountStatus> findStatuses(Collection<Long> accountNumbers) {
+    Map<Long, AccountStatus> statuses = new HashMap<>();
+
+    if (accountNumbers.isEmpty()) {
+      return statuses;
+    }
+
+    getEntityManager()
+        .createQuery("select a.accountNumber, a.accountStatus from AccountJpa a where a.accountNumber in ?1",
+            Object[].class)
+        .setParameter(1, accountNumbers)
+        .getResultList()
+        .forEach(row -> statuses.put((Long) row[0], (AccountStatus) row[1]));
+
+    return statuses;
+  }
+
+  /**
+   * Apply summed deposits and withdrawals to accounts in one transaction.
+   *
+   * <p>UPDATE statements are sent by JDBC batches, one batch for deposits and one for withdrawals.
+   * Withdrawals are not applied to overdrawn accounts. Applied movements are recorded in the account journal
+   * in the same transaction.
+   *
+   * @param deposits    deposited amount by account number
+   * @param withdrawals withdrawn amount by account number
+   * @param movements   movements the sums consist of
+   */
+  @Transactional
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public void applyBalanceChanges(Map<Long, BigDecimal> deposits, Map<Long, BigDecimal> withdrawals,
+                                  List<AccountTransaction> movements) {
+    deposits.keySet().forEach(this::invalidateCached);
+    withdrawals.keySet().forEach(this::invalidateCached);
+
+    Set<Long> depositedAccounts = new HashSet<>();
+    Set<Long> withdrawnAccounts = new HashSet<>();
+
+    getEntityManager().unwrap(Session.class).doWork(connection -> {
+      try (PreparedStatement deposit = connection.prepareStatement(
+          "update account set balance = balance + ?, version = version + 1 where accountNumber = ?")) {
+        List<Long> accountNumbers = new ArrayList<>(deposits.size());
+        for (Map.Entry<Long, BigDecimal> entry : deposits.entrySet()) {
+          deposit.setBigDecimal(1, entry.getValue());
+          deposit.setLong(2, entry.getKey());
+          deposit.addBatch();
+          accountNumbers.add(entry.getKey());
+        }
+        addApplied(accountNumbers, deposit.executeBatch(), depositedAccounts);
+      }
+
+      try (PreparedStatement withdrawal = connection.prepareStatement(
+          "update account set balance = balance - ?, version = version + 1"
+              + " where accountNumber = ? and accountStatus <> ?")) {
+        List<Long> accountNumbers = new ArrayList<>(withdrawals.size());
+        for (Map.Entry<Long, BigDecimal> entry : withdrawals.entrySet()) {
+          withdrawal.setBigDecimal(1, entry.getValue());
+          withdrawal.setLong(2, entry.getKey());
+          // Account status is persisted as ordinal.
+          withdrawal.setInt(3, AccountStatus.OVERDRAWN.ordinal());
+          withdrawal.addBatch();
+          accountNumbers.add(entry.getKey());
+        }
+        addApplied(accountNumbers, withdrawal.executeBatch(), withdrawnAccounts);
+      }
+    });
+
+    journal(movements, depositedAccounts, withdrawnAccounts);
+  }
+
+  private static void addApplied(List<Long> accountNumbers, int[] updateCounts, Set<Long> appliedAccounts) {
+    for (int i = 0; i < updateCounts.length; i++) {
+      // Statement.SUCCESS_NO_INFO is negative, such an update is taken as applied.
+      if (updateCounts[i] != 0) {
+        appliedAccounts.add(accountNumbers.get(i));
+      }
+    }
+  }
+
+  private void journal(List<AccountTransaction> movements, Set<Long> depositedAccounts, Set<Long> withdrawnAccounts) {
+    Set<Long> updatedAccounts = new HashSet<>(depositedAccounts);
+    updatedAccounts.addAll(withdrawnAccounts);
+
+    if (updatedAccounts.isEmpty()) {
+      return;
+    }
+
+    Map<Long, AccountJpa> accounts = new HashMap<>();
+    list("accountNumber in ?1", updatedAccounts).forEach(account -> accounts.put(account.getAccountNumber(), account));
+    Instant now = Instant.now();
+
+    for (AccountTransaction movement : movements) {
+      Set<Long> appliedAccounts = movement.getType() == TransactionType.DEPOSIT
+          ? depositedAccounts
+          : withdrawnAccounts;
+
+      // Withdrawals of accounts which became overdrawn meanwhile were not applied.
+      if (appliedAccounts.contains(movement.getAccountNumber())) {
+        AccountJpa account = accounts.get(movement.getAccountNumber());
+        movementRepository.persist(new AccountMovementJpa(account.getAccountNumber(), movement.getType(),
+            movement.getAmount(), appliedVersion(account, movement.getType(), withdrawnAccounts), now));
+      }
+    }
+
+    for (AccountJpa account : accounts.values()) {
+      int versionSteps = (depositedAccounts.contains(account.getAccountNumber()) ? 1 : 0)
+          + (withdrawnAccounts.contains(account.getAccountNumber()) ? 1 : 0);
+      snapshotRepository.snapshotIfDue(account.getAccountNumber(), account.getVersion(), account.getBalance(),
+          versionSteps, now);
+    }
+  }
+
+  /**
+   * Version the account got from the UPDATE which applied movements of the type.
+   *
+   * <p>Rows stay locked by the UPDATEs until the end of the transaction, so the deposit batch, which runs first,
+   * produced the version before the withdrawal one, if the withdrawal was applied too.
+   */
+  private static long appliedVersion(AccountJpa account, TransactionType type, Set<Long> withdrawnAccounts) {
+    return type == TransactionType.DEPOSIT && withdrawnAccounts.contains(account.getAccountNumber())
+        ? account.getVersion() - 1
+        : account.getVersion();
+  }
+
+  /**
+   * Find next page of accounts matching the filter, ordered by id (keyset pagination).
+   *
+   * <p>Unlike offset pagination, the cost of the query doesn't grow with the page number.
+   *
+   * @param filter   account conditions
+   * @param afterId  id of the last account from the previous page, {@code null} for the first page
+   * @param pageSize maximum number of returned accounts
+   */
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public List<AccountJpa> findPageAfter(AccountFilter filter, Long afterId, int pageSize) {
+    Map<String, Object> parameters = new HashMap<>();
+    List<String> conditions = filterConditions(filter, parameters);
+
+    if (afterId != null) {
+      conditions.add("id > :afterId");
+      parameters.put("afterId", afterId);
+    }
+
+    if (conditions.isEmpty()) {
+      return findAll(Sort.by("id")).page(0, pageSize).list();
+    }
+
+    return find(String.join(" and ", conditions), Sort.by("id"), parameters).page(0, pageSize).list();
+  }
+
+  /**
+   * Count accounts and sum their balances per customer, by one GROUP BY query.
+   *
+   * @param filter              conditions of the summed accounts
+   * @param afterCustomerNumber last customer number of the previous page, {@code null} for the first page
+   * @param pageSize            maximum number of returned customers
+   * @return summaries ordered by customer number
+   */
+  @Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+  public List<CustomerSummary> summarizeByCustomer(AccountFilter filter, Long afterCustomerNumber, int pageSize) {
+    Map<String, Object> parameters = new HashMap<>();
+    List<String> conditions = filterConditions(filter, parameters);
+
+    if (afterCustomerNumber != null) {
+      conditions.add("customerNumber > :afterCustomerNumber");
+      parameters.put("afterCustomerNumber", afterCustomerNumber);
+    }
+
+    TypedQuery<CustomerSummary> query = getEntityManager().createQuery(
+        "select new quarkus.accounts.CustomerSummary(customerNumber, count(*), sum(balance)) from AccountJpa"
+            + (conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions))
+            + " group by customerNumber order by customerNumber", CustomerSummary.class);
+    parameters.forEach(query::setParameter);
+
+    return query.setMaxResults(pageSize).getResultList();
+  }
+
+  private static List<String> filterConditions(AccountFilter filter, Map<String, Object> parameters) {
+    List<String> conditions = new ArrayList<>();
+
+    if (filter.getStatus() != null) {
+      conditions.add("accountStatus = :status");
+      parameters.put("status", filter.getStatus());
+    }
+    if (filter.getCustomerNumber() != null) {
+      conditions.add("customerNumber = :customerNumber");
+      parameters.put("customerNumber", filter.getCustomerNumber());
+    }
+    if (filter.getMinBalance() != null) {
+      conditions.add("balance >= :minBalance");
+      parameters.put("minBalance", filter.getMinBalance());
+    }
+    if (filter.getMaxBalance() != null) {
+      conditions.add("balance <= :maxBalance");
+      parameters.put("maxBalance", filter.getMaxBalance());
+    }
+
+    return conditions;
+  }
+
+  /**
+   * Pass all accounts, ordered by id, one by one to the given consumer.
+   *
+   * <p>Accounts are read through a db cursor and detached from the persistence context right after consumption,
+   * so memory usage doesn't depend on the number of accounts. Time spent reading the cursor, without the consumer,
+   * is recorded by {@link DbCursorTimer}.
+   *
+   * @param consumer called for every account
+   */
+  // Streaming query requires an open transaction for the whole time the cursor is read.
+  @Transactional
+  public void forEachAccount(Consumer<AccountJpa> consumer) {
+    long start = System.nanoTime();
+
+    try (Stream<AccountJpa> accounts = findAll(Sort.by("id"))
+        .withHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+        .stream()) {
+      DbCursorTimer.forEach(registry.timer("account.db.cursor", "store", "jpa"), start, accounts.iterator(),
+          account -> {
+            consumer.accept(account);
+            getEntityManager().detach(account);
+          });
+    }
+  }
 }
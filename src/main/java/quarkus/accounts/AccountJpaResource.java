@@ -1,11 +1,24 @@
 package quarkus.accounts;
 
+import io.smallrye.mutiny.Uni;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
-import javax.json.Json;
-import javax.json.JsonObjectBuilder;
+import javax.json.bind.Jsonb;
+import javax.persistence.PersistenceException;
 import javax.transaction.Transactional;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -14,11 +27,12 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import javax.ws.rs.ext.ExceptionMapper;
-import javax.ws.rs.ext.Provider;
+import javax.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 // Quarkus defaults JAX-RS resources to @Singleton
 @Path("/accounts")
@@ -30,26 +44,122 @@ public class AccountJpaResource {
   @Inject
   AccountJpaRepository accountJpaRepository;
 
+  @Inject
+  Jsonb jsonb;
+
+  @Inject
+  VirtualThreads virtualThreads;
+
+  @ConfigProperty(name = "account-service.batch.chunk-size")
+  int batchChunkSize;
+
+  @ConfigProperty(name = "account-service.page.default-size")
+  int defaultPageSize;
+
+  @ConfigProperty(name = "account-service.page.max-size")
+  int maxPageSize;
+
+  @ConfigProperty(name = "account-service.deposit-coalescing.enabled")
+  boolean depositCoalescingEnabled;
+
+  @ConfigProperty(name = "account-service.deposit-coalescing.window-millis")
+  long depositCoalescingWindowMillis;
+
+  @ConfigProperty(name = "account-service.deposit-coalescing.await-timeout-millis")
+  long depositCoalescingAwaitTimeoutMillis;
+
+  private DepositCoalescer<AccountJpa> depositCoalescer;
+
+  @PostConstruct
+  void init() {
+    // Every batch of coalesced deposits is written and journaled as one deposit by its own transaction.
+    depositCoalescer = new DepositCoalescer<>(accountJpaRepository::deposit, depositCoalescingWindowMillis,
+        depositCoalescingAwaitTimeoutMillis);
+  }
+
   /**
    * Returns a Set of Account objects.
    */
   @GET
+  @Produces({MediaType.APPLICATION_JSON, AccountCborWriter.APPLICATION_CBOR})
   public List<AccountJpa> allAccounts() {
     return accountJpaRepository.listAll();
   }
 
+  /**
+   * Returns one page of accounts matching the filter, ordered by id.
+   *
+   * @param filter account conditions, e.g. {@code status=OVERDRAWN}
+   * @param after  cursor returned with the previous page, not set for the first page
+   * @param size   page size, default page size is used if not set
+   */
+  @GET
+  @Path("/page")
+  @Produces({MediaType.APPLICATION_JSON, AccountCborWriter.APPLICATION_CBOR})
+  public AccountPage<AccountJpa> accountsPage(@BeanParam AccountFilter filter, @QueryParam("after") Long after,
+                                              @QueryParam("size") Integer size) {
+    int pageSize = pageSize(size);
+
+    List<AccountJpa> accounts = accountJpaRepository.findPageAfter(filter, after, pageSize);
+
+    String nextCursor = accounts.size() < pageSize ? null : String.valueOf(accounts.get(accounts.size() - 1).getId());
+
+    return new AccountPage<>(accounts, nextCursor);
+  }
+
+  /**
+   * Returns number of accounts and total balance per customer, ordered by customer number.
+   *
+   * <p>Accounts are grouped and summed by the db.
+   *
+   * @param filter conditions of the summed accounts
+   * @param after  last customer number of the previous page, not set for the first page
+   * @param size   page size, default page size is used if not set
+   */
+  @GET
+  @Path("/customers")
+  public List<CustomerSummary> customerSummaries(@BeanParam AccountFilter filter, @QueryParam("after") Long after,
+                                                 @QueryParam("size") Integer size) {
+    return accountJpaRepository.summarizeByCustomer(filter, after, pageSize(size));
+  }
+
+  private int pageSize(Integer size) {
+    int pageSize = size == null ? defaultPageSize : size;
+
+    if (pageSize < 1 || pageSize > maxPageSize) {
+      throw new WebApplicationException("Page size must be between 1 and " + maxPageSize + ".", 400);
+    }
+
+    return pageSize;
+  }
+
+  /**
+   * Streams all accounts as NDJSON.
+   *
+   * <p>Accounts are written to the response as they are read from the db, without loading them all into memory.
+   */
+  @GET
+  @Path("/stream")
+  @Produces(NdjsonOutput.APPLICATION_NDJSON)
+  public StreamingOutput streamAccounts() {
+    return NdjsonOutput.of(jsonb, accountJpaRepository::forEachAccount);
+  }
+
   @GET
   // Defines the name of the parameter on the URL path
   @Path("/{accountNumber}")
+  @Produces({MediaType.APPLICATION_JSON, AccountCborWriter.APPLICATION_CBOR})
   // @PathParam maps the accountNumber URL parameter into the accountNumber method parameter.
-  public AccountJpa getAccount(@PathParam("accountNumber") Long accountNumber) {
-    AccountJpa account = accountJpaRepository.findByAccountNumber(accountNumber);
+  public Uni<AccountJpa> getAccount(@PathParam("accountNumber") Long accountNumber) {
+    return virtualThreads.run("AccountJpaResource.getAccount", () -> {
+      AccountJpa account = accountJpaRepository.findCachedByAccountNumber(accountNumber);
 
-    if (account == null) {
-      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
-    }
+      if (account == null) {
+        throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+      }
 
-    return account;
+      return account;
+    });
   }
 
   @POST
@@ -62,82 +172,211 @@ public class AccountJpaResource {
       throw new WebApplicationException("Id was invalidly set on request.", 400);
     }
 
-    accountJpaRepository.persist(account);
+    try {
+      accountJpaRepository.persist(account);
+      // Inserts the account now, so a duplicate account number fails here, not at commit.
+      accountJpaRepository.flush();
+    } catch (PersistenceException e) {
+      if (AccountJpaRepository.isDuplicateKey(e)) {
+        throw new WebApplicationException("Account with " + account.getAccountNumber() + " already exists.", 409);
+      }
+      throw e;
+    }
+
+    // Not found account may be cached.
+    accountJpaRepository.invalidateCached(account.getAccountNumber());
     return Response.status(201).entity(account).build();
   }
 
-  @PUT
-  @Path("{accountNumber}/withdrawal")
-  @Transactional
-  public AccountJpa withdrawal(@PathParam("accountNumber") Long accountNumber, String amount) {
-    AccountJpa account = accountJpaRepository.findByAccountNumber(accountNumber);
+  /**
+   * Creates accounts sent as JSON array.
+   *
+   * <p>Accounts are persisted in chunks, each chunk by one transaction using JDBC batch inserts.
+   */
+  @POST
+  @Path("/batch")
+  public List<BatchItemResult> createAccounts(List<AccountJpa> accounts) {
+    if (accounts == null) {
+      throw new WebApplicationException("Accounts are missing in request.", 400);
+    }
 
-    if (account == null) {
-      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+    return createAccounts(accounts.iterator());
+  }
+
+  /**
+   * Creates accounts sent as NDJSON, one account per line.
+   *
+   * <p>Request body is read lazily chunk by chunk, so it's never held in memory as a whole.
+   */
+  @POST
+  @Path("/batch")
+  @Consumes(NdjsonOutput.APPLICATION_NDJSON)
+  public List<BatchItemResult> createAccountsNdjson(InputStream accounts) {
+    return createAccounts(NdjsonInput.read(jsonb, accounts, AccountJpa.class));
+  }
+
+  private List<BatchItemResult> createAccounts(Iterator<AccountJpa> accounts) {
+    List<BatchItemResult> results = new ArrayList<>();
+
+    Chunks.forEachChunk(accounts, batchChunkSize, chunk -> results.addAll(createChunk(chunk, results.size())));
+
+    return results;
+  }
+
+  private List<BatchItemResult> createChunk(List<AccountJpa> chunk, int firstIndex) {
+    Set<Long> existingAccountNumbers = accountJpaRepository.findExistingAccountNumbers(chunk.stream()
+        .filter(Objects::nonNull)
+        .map(AccountJpa::getAccountNumber)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet()));
+
+    Set<Long> chunkAccountNumbers = new HashSet<>();
+    List<AccountJpa> newAccounts = new ArrayList<>(chunk.size());
+    List<BatchItemResult> results = new ArrayList<>(chunk.size());
+    List<BatchItemResult> createdResults = new ArrayList<>(chunk.size());
+
+    for (int i = 0; i < chunk.size(); i++) {
+      AccountJpa account = chunk.get(i);
+      int index = firstIndex + i;
+
+      if (account == null) {
+        results.add(BatchItemResult.failure(index, null, 400, "Account is missing or malformed."));
+      } else if (account.getId() != null) {
+        results.add(BatchItemResult.failure(index, account.getAccountNumber(), 400,
+            "Id was invalidly set on request."));
+      } else if (existingAccountNumbers.contains(account.getAccountNumber())
+          || !chunkAccountNumbers.add(account.getAccountNumber())) {
+        results.add(BatchItemResult.failure(index, account.getAccountNumber(), 409,
+            "Account with " + account.getAccountNumber() + " already exists."));
+      } else {
+        BatchItemResult result = BatchItemResult.success(index, account.getAccountNumber(), 201);
+        newAccounts.add(account);
+        results.add(result);
+        createdResults.add(result);
+      }
     }
 
-    if (account.getAccountStatus().equals(AccountStatus.OVERDRAWN)) {
-      throw new WebApplicationException(
-          "Account is overdrawn, no further withdrawals permitted",
-          409);
+    if (!newAccounts.isEmpty()) {
+      try {
+        accountJpaRepository.persistChunk(newAccounts);
+      } catch (RuntimeException e) {
+        // The whole chunk was rolled back.
+        createdResults.forEach(result -> result.fail(500, e.getMessage()));
+      }
     }
 
-    account.withdrawFunds(new BigDecimal(amount));
-    return account;
+    return results;
+  }
+
+  /**
+   * Posts deposits and withdrawals of many accounts at once.
+   *
+   * <p>Movements are processed in chunks. Movements of one chunk are grouped per account and applied by one
+   * batch of balance updates.
+   */
+  @POST
+  @Path("/transactions/batch")
+  public List<BatchItemResult> postTransactions(List<AccountTransaction> transactions) {
+    if (transactions == null) {
+      throw new WebApplicationException("Transactions are missing in request.", 400);
+    }
+
+    List<BatchItemResult> results = new ArrayList<>(transactions.size());
+
+    Chunks.forEachChunk(transactions.iterator(), batchChunkSize,
+        chunk -> results.addAll(postTransactionChunk(chunk, results.size())));
+
+    return results;
+  }
+
+  private List<BatchItemResult> postTransactionChunk(List<AccountTransaction> chunk, int firstIndex) {
+    Map<Long, AccountStatus> statuses = accountJpaRepository.findStatuses(TransactionBatch.accountNumbers(chunk));
+    TransactionBatch batch = TransactionBatch.plan(chunk, firstIndex, statuses::get);
+
+    try {
+      accountJpaRepository.applyBalanceChanges(batch.getDeposits(), batch.getWithdrawals(), batch.getMovements());
+    } catch (RuntimeException e) {
+      batch.failApplied(e.getMessage());
+    }
+
+    return batch.getResults();
+  }
+
+  @PUT
+  @Path("{accountNumber}/withdrawal")
+  public Uni<AccountJpa> withdrawal(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    return virtualThreads.run("AccountJpaResource.withdrawal", () -> {
+      AccountJpa account = accountJpaRepository.withdraw(accountNumber, amount.toBigDecimal());
+
+      if (account == null) {
+        // Withdrawal was not applied, find out why.
+        if (accountJpaRepository.findByAccountNumber(accountNumber) == null) {
+          throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+        }
+
+        throw new WebApplicationException(
+            "Account is overdrawn, no further withdrawals permitted",
+            409);
+      }
+
+      return account;
+    });
   }
 
   @PUT
   @Path("{accountNumber}/deposit")
-  @Transactional
-  public AccountJpa deposit(@PathParam("accountNumber") Long accountNumber, String amount) {
-    AccountJpa account = accountJpaRepository.findByAccountNumber(accountNumber);
+  public Uni<AccountJpa> deposit(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    return virtualThreads.run("AccountJpaResource.deposit", () -> {
+      BigDecimal depositAmount = amount.toBigDecimal();
+      AccountJpa account = depositCoalescingEnabled
+          ? depositCoalescer.deposit(accountNumber, depositAmount)
+          : accountJpaRepository.deposit(accountNumber, depositAmount);
 
-    if (account == null) {
-      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
-    }
+      if (account == null) {
+        throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+      }
 
-    account.addFunds(new BigDecimal(amount));
-    return account;
+      return account;
+    });
   }
 
   @DELETE
   @Path("{accountNumber}")
-  @Transactional
   public Response closeAccount(@PathParam("accountNumber") Long accountNumber) {
-    AccountJpa account = accountJpaRepository.findByAccountNumber(accountNumber);
-
-    if (account == null) {
+    if (!accountJpaRepository.close(accountNumber)) {
       throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
     }
 
-    account.close();
     return Response.noContent().build();
   }
 
   /**
-   * Implements ExceptionMapper for all Exception types.
+   * Returns balance of the account at the given time.
+   *
+   * @param at ISO-8601 instant, e.g. {@code 2023-01-31T23:59:59Z}
    */
-  // @Provider indicates the class is an auto-discovered JAX-RS Provider
-  @Provider
-  public static class ErrorMapper implements ExceptionMapper<Exception> {
-
-    @Override
-    public Response toResponse(Exception exception) {
-      int code = 500;
-      if (exception instanceof WebApplicationException webAppException) {
-        code = webAppException.getResponse().getStatus();
-      }
+  @GET
+  @Path("{accountNumber}/balance")
+  public AccountBalance balanceAt(@PathParam("accountNumber") Long accountNumber, @QueryParam("at") String at) {
+    Instant instant = parseInstant(at);
+    BigDecimal balance = accountJpaRepository.findBalanceAt(accountNumber, instant);
+
+    if (balance == null) {
+      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+    }
 
-      JsonObjectBuilder entityBuilder =
-          Json.createObjectBuilder().add("exceptionType", exception.getClass().getName())
-              .add("code", code);
+    return new AccountBalance(accountNumber, instant, balance);
+  }
 
-      if (exception.getMessage() != null) {
-        entityBuilder.add("error", exception.getMessage());
+  private static Instant parseInstant(String instant) {
+    if (instant != null) {
+      try {
+        return Instant.parse(instant);
+      } catch (DateTimeParseException e) {
+        // Handled below.
       }
-
-      return Response.status(code).entity(entityBuilder.build()).build();
     }
-  }
 
+    throw new WebApplicationException("Time must be set as ISO-8601 instant.", 400);
+  }
 }
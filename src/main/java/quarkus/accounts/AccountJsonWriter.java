@@ -0,0 +1,257 @@
+package quarkus.accounts;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Writes accounts, lists and pages of accounts as JSON without reflection, in place of JSON-B.
+ *
+ * <p>Properties are written by hand-written code straight into a per-thread byte buffer, see {@link AccountEncoder}.
+ * Numbers are written digit by digit, {@link BigDecimal} balances by their cached string, so a response allocates
+ * next to nothing besides the entity itself. The output is the same as of JSON-B. Enabled by
+ * {@code account-service.json.account-writer.enabled}.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+// Takes precedence over the JSON-B writer, which handles any type.
+@Priority(Priorities.USER - 100)
+public class AccountJsonWriter implements MessageBodyWriter<Object> {
+
+  /**
+   * Longest sequence written for one char, a control char escaped by its hex code.
+   */
+  private static final int MAX_CHAR_BYTES = 6;
+
+  /**
+   * Escape sequences of ASCII chars, {@code null} for chars written as they are. Same as of the JSON-P generator
+   * used by JSON-B.
+   */
+  private static final String[] ESCAPES = new String[128];
+
+  static {
+    for (char c = 0; c < 0x20; c++) {
+      ESCAPES[c] = String.format("\\u%04x", (int) c);
+    }
+
+    ESCAPES['\b'] = "\\b";
+    ESCAPES['\f'] = "\\f";
+    ESCAPES['\n'] = "\\n";
+    ESCAPES['\r'] = "\\r";
+    ESCAPES['\t'] = "\\t";
+    ESCAPES['"'] = "\\\"";
+    ESCAPES['\\'] = "\\\\";
+  }
+
+  /**
+   * Quoted property names followed by colon, indexed by field ordinal.
+   */
+  private static final byte[][] NAMES = new byte[AccountEncoder.Field.values().length][];
+
+  static {
+    for (AccountEncoder.Field field : AccountEncoder.Field.values()) {
+      NAMES[field.ordinal()] = ('"' + field.propertyName + "\":").getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+  private static final ThreadLocal<JsonEncoder> ENCODER = ThreadLocal.withInitial(JsonEncoder::new);
+
+  @ConfigProperty(name = "account-service.json.account-writer.enabled")
+  boolean enabled;
+
+  @Override
+  public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return enabled && AccountEncoder.isWriteable(type, genericType);
+  }
+
+  @Override
+  public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+      MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+    ENCODER.get().write(entity, entityStream);
+  }
+
+  /**
+   * Append the given text to the builder as JSON string, quoted and escaped.
+   */
+  static StringBuilder appendString(StringBuilder builder, String value) {
+    builder.append('"');
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      String escape = c < ESCAPES.length ? ESCAPES[c] : null;
+
+      if (escape == null) {
+        builder.append(c);
+      } else {
+        builder.append(escape);
+      }
+    }
+
+    return builder.append('"');
+  }
+
+  /**
+   * JSON encoding of accounts.
+   */
+  private static final class JsonEncoder extends AccountEncoder {
+
+    /**
+     * Whether the next value or name must be preceded by a comma.
+     */
+    private boolean separate;
+
+    @Override
+    protected void reset() {
+      separate = false;
+    }
+
+    @Override
+    protected void beginObject() throws IOException {
+      separator(1);
+      buffer[position++] = '{';
+      separate = false;
+    }
+
+    @Override
+    protected void endObject() throws IOException {
+      ensure(1);
+      buffer[position++] = '}';
+      separate = true;
+    }
+
+    @Override
+    protected void beginArray(int size) throws IOException {
+      separator(1);
+      buffer[position++] = '[';
+      separate = false;
+    }
+
+    @Override
+    protected void endArray() throws IOException {
+      ensure(1);
+      buffer[position++] = ']';
+      separate = true;
+    }
+
+    @Override
+    protected void name(Field field) throws IOException {
+      byte[] name = NAMES[field.ordinal()];
+      separator(name.length);
+      System.arraycopy(name, 0, buffer, position, name.length);
+      position += name.length;
+      separate = false;
+    }
+
+    @Override
+    protected void nullValue() throws IOException {
+      separator(NULL.length);
+      System.arraycopy(NULL, 0, buffer, position, NULL.length);
+      position += NULL.length;
+      separate = true;
+    }
+
+    @Override
+    protected void longValue(long value) throws IOException {
+      if (value == Long.MIN_VALUE) {
+        asciiValue(Long.toString(value));
+        return;
+      }
+
+      separator(20);
+
+      if (value < 0) {
+        buffer[position++] = '-';
+        value = -value;
+      }
+
+      int end = position + digits(value);
+
+      for (int i = end - 1; i >= position; i--) {
+        buffer[i] = (byte) ('0' + value % 10);
+        value /= 10;
+      }
+
+      position = end;
+      separate = true;
+    }
+
+    @Override
+    protected void decimalValue(BigDecimal value) throws IOException {
+      // BigDecimal caches its string, so writing the same balance again doesn't format it again.
+      asciiValue(value.toString());
+    }
+
+    @Override
+    protected void stringValue(String value) throws IOException {
+      separator(1);
+      buffer[position++] = '"';
+
+      for (int i = 0; i < value.length(); ) {
+        char c = value.charAt(i);
+        String escape = c < ESCAPES.length ? ESCAPES[c] : null;
+
+        if (escape == null) {
+          i = utf8(value, i);
+        } else {
+          ensure(MAX_CHAR_BYTES);
+
+          for (int j = 0; j < escape.length(); j++) {
+            buffer[position++] = (byte) escape.charAt(j);
+          }
+
+          i++;
+        }
+      }
+
+      ensure(1);
+      buffer[position++] = '"';
+      separate = true;
+    }
+
+    private void asciiValue(String value) throws IOException {
+      separator(0);
+
+      for (int i = 0; i < value.length(); i++) {
+        ensure(1);
+        buffer[position++] = (byte) value.charAt(i);
+      }
+
+      separate = true;
+    }
+
+    /**
+     * Write comma if the next value needs it, and make room for the comma and the given number of bytes.
+     */
+    private void separator(int length) throws IOException {
+      ensure(length + 1);
+
+      if (separate) {
+        buffer[position++] = ',';
+      }
+    }
+
+    private static int digits(long value) {
+      int digits = 1;
+
+      while (value >= 10) {
+        value /= 10;
+        digits++;
+      }
+
+      return digits;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Account of the in-memory ledger.
+ *
+ * <p>Instances are snapshots of the ledger state, changing them doesn't change the ledger.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountLedger {
+
+  @NonNull
+  private Long accountNumber;
+
+  @NonNull
+  private Long customerNumber;
+
+  @NonNull
+  private String customerName;
+
+  @NonNull
+  private BigDecimal balance;
+
+  @NonNull
+  private AccountStatus accountStatus = AccountStatus.OPEN;
+}
@@ -0,0 +1,128 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import java.util.List;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * REST endpoint for {@link AccountLedger}, stored in the in-memory {@link AccountLedgerStore}.
+ */
+@Path("/accounts-ledger")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class AccountLedgerResource {
+
+  @Inject
+  AccountLedgerStore accountLedgerStore;
+
+  @GET
+  public List<AccountLedger> allAccounts() {
+    return accountLedgerStore.findAll();
+  }
+
+  @GET
+  @Path("/{accountNumber}")
+  public AccountLedger getAccount(@PathParam("accountNumber") Long accountNumber) {
+    AccountLedger account = accountLedgerStore.findByAccountNumber(accountNumber);
+
+    if (account == null) {
+      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+    }
+
+    return account;
+  }
+
+  @POST
+  public Response createAccount(AccountLedger account) {
+    if (account.getAccountNumber() == null || account.getCustomerNumber() == null
+        || account.getCustomerName() == null || account.getBalance() == null || account.getAccountStatus() == null) {
+      throw new WebApplicationException(
+          "Account number, customer number, customer name, balance and status must be set.", 400);
+    }
+
+    // Rejects balance the ledger can't hold before the store is called.
+    toCents(account.getBalance());
+
+    if (!accountLedgerStore.create(account)) {
+      throw new WebApplicationException("Account with " + account.getAccountNumber() + " already exists.", 409);
+    }
+
+    return Response.status(201).entity(account).build();
+  }
+
+  @PUT
+  @Path("{accountNumber}/withdrawal")
+  public AccountLedger withdrawal(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    AccountLedger account;
+
+    try {
+      account = accountLedgerStore.withdraw(accountNumber, amount.getMinorUnits());
+    } catch (ArithmeticException e) {
+      throw balanceOutOfRange(accountNumber);
+    }
+
+    if (account == null) {
+      // Withdrawal was not applied, find out why.
+      if (accountLedgerStore.findByAccountNumber(accountNumber) == null) {
+        throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+      }
+
+      throw new WebApplicationException(
+          "Account is overdrawn, no further withdrawals permitted",
+          409);
+    }
+
+    return account;
+  }
+
+  @PUT
+  @Path("{accountNumber}/deposit")
+  public AccountLedger deposit(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    AccountLedger account;
+
+    try {
+      account = accountLedgerStore.deposit(accountNumber, amount.getMinorUnits());
+    } catch (ArithmeticException e) {
+      throw balanceOutOfRange(accountNumber);
+    }
+
+    if (account == null) {
+      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+    }
+
+    return account;
+  }
+
+  @DELETE
+  @Path("{accountNumber}")
+  public Response closeAccount(@PathParam("accountNumber") Long accountNumber) {
+    if (!accountLedgerStore.close(accountNumber)) {
+      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+    }
+
+    return Response.noContent().build();
+  }
+
+  private static WebApplicationException balanceOutOfRange(Long accountNumber) {
+    return new WebApplicationException("Balance of account " + accountNumber + " would be out of range.", 409);
+  }
+
+  private static long toCents(BigDecimal amount) {
+    try {
+      return AccountLedgerStore.toCents(amount);
+    } catch (ArithmeticException e) {
+      throw new WebApplicationException("Amount must have at most 2 decimal places.", 400);
+    }
+  }
+}
@@ -0,0 +1,331 @@
+package quarkus.accounts;
+
+import io.quarkus.runtime.StartupEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * In-process account store, the storage of {@link AccountLedgerResource}.
+ *
+ * <ul>
+ *   <li>Accounts are split by account number into segments, each guarded by its own lock, so changes of accounts
+ *     in different segments don't contend.</li>
+ *   <li>Balances are held as {@code long} cents, so balance arithmetic doesn't allocate.</li>
+ *   <li>Every change is appended to the {@link LedgerJournal} of the account's segment before it's applied, so
+ *     segments don't contend for the journal either. Journals are replayed on startup.</li>
+ * </ul>
+ */
+@ApplicationScoped
+public class AccountLedgerStore {
+
+  private static final Logger LOG = Logger.getLogger(AccountLedgerStore.class);
+
+  /**
+   * Balance scale, balances are held in cents.
+   */
+  private static final int SCALE = 2;
+
+  @ConfigProperty(name = "account-service.ledger.segments")
+  int segmentCount;
+
+  @ConfigProperty(name = "account-service.ledger.journal-file")
+  Path journalFile;
+
+  @ConfigProperty(name = "account-service.ledger.journal-region-size")
+  int journalRegionSize;
+
+  @ConfigProperty(name = "account-service.ledger.journal-force")
+  boolean journalForce;
+
+  private Segment[] segments;
+
+  void onStart(@Observes StartupEvent event) {
+    int size = 1;
+    while (size < segmentCount) {
+      size <<= 1;
+    }
+
+    checkJournalSegments(size);
+
+    segments = new Segment[size];
+    for (int i = 0; i < size; i++) {
+      segments[i] = new Segment();
+    }
+
+    long start = System.nanoTime();
+    Replay replay = new Replay();
+
+    for (int i = 0; i < size; i++) {
+      Path file = segmentJournalFile(i);
+
+      try {
+        segments[i].journal = LedgerJournal.open(file, journalRegionSize, journalForce, replay);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Ledger journal " + file + " can't be opened.", e);
+      }
+    }
+
+    int accounts = 0;
+    for (Segment segment : segments) {
+      accounts += segment.accounts.size();
+    }
+
+    LOG.infof("Ledger journals %s.* of %d segments replayed in %d ms, %d accounts loaded.", journalFile, size,
+        (System.nanoTime() - start) / 1_000_000, accounts);
+  }
+
+  @PreDestroy
+  void closeJournals() throws IOException {
+    if (segments == null) {
+      return;
+    }
+
+    for (Segment segment : segments) {
+      if (segment.journal != null) {
+        segment.journal.close();
+      }
+    }
+  }
+
+  /**
+   * Convert amount to cents.
+   *
+   * @throws ArithmeticException if the amount has more than 2 decimal places or it's out of range
+   */
+  static long toCents(BigDecimal amount) {
+    return amount.movePointRight(SCALE).longValueExact();
+  }
+
+  static BigDecimal fromCents(long cents) {
+    return BigDecimal.valueOf(cents, SCALE);
+  }
+
+  public List<AccountLedger> findAll() {
+    List<AccountLedger> accounts = new ArrayList<>();
+
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.accounts.forEachValue(slot -> accounts.add(slot.toAccount()));
+      }
+    }
+
+    return accounts;
+  }
+
+  /**
+   * Find account with given account number.
+   *
+   * @param accountNumber unique account number
+   * @return snapshot of the account, {@code null} if the account doesn't exist
+   */
+  public AccountLedger findByAccountNumber(long accountNumber) {
+    Segment segment = segment(accountNumber);
+
+    synchronized (segment) {
+      Slot slot = segment.accounts.get(accountNumber);
+      return slot == null ? null : slot.toAccount();
+    }
+  }
+
+  /**
+   * Create the account.
+   *
+   * @param account new account
+   * @return false if an account with the same account number already exists
+   * @throws ArithmeticException if the balance has more than 2 decimal places or it's out of range
+   */
+  public boolean create(AccountLedger account) {
+    long accountNumber = account.getAccountNumber();
+    Slot slot = new Slot(accountNumber, account.getCustomerNumber(), account.getCustomerName(),
+        toCents(account.getBalance()), account.getAccountStatus());
+    Segment segment = segment(accountNumber);
+
+    synchronized (segment) {
+      if (segment.accounts.get(accountNumber) != null) {
+        return false;
+      }
+
+      segment.journal.appendCreated(accountNumber, slot.customerNumber, slot.customerName, slot.balanceCents,
+          slot.status);
+      segment.accounts.putIfAbsent(accountNumber, slot);
+      return true;
+    }
+  }
+
+  /**
+   * Add funds to the account.
+   *
+   * @param accountNumber unique account number
+   * @param amountCents   deposited amount in cents
+   * @return snapshot of the updated account, {@code null} if the account doesn't exist
+   * @throws ArithmeticException if the balance would overflow, the account is not changed
+   */
+  public AccountLedger deposit(long accountNumber, long amountCents) {
+    Segment segment = segment(accountNumber);
+
+    synchronized (segment) {
+      Slot slot = segment.accounts.get(accountNumber);
+      if (slot == null) {
+        return null;
+      }
+
+      long balance = Math.addExact(slot.balanceCents, amountCents);
+      segment.journal.appendDeposited(accountNumber, amountCents);
+      slot.balanceCents = balance;
+      return slot.toAccount();
+    }
+  }
+
+  /**
+   * Withdraw funds from the account. Withdrawal is not applied to an overdrawn account.
+   *
+   * @param accountNumber unique account number
+   * @param amountCents   withdrawn amount in cents
+   * @return snapshot of the updated account, {@code null} if the account doesn't exist or it's overdrawn
+   * @throws ArithmeticException if the balance would overflow, the account is not changed
+   */
+  public AccountLedger withdraw(long accountNumber, long amountCents) {
+    Segment segment = segment(accountNumber);
+
+    synchronized (segment) {
+      Slot slot = segment.accounts.get(accountNumber);
+      if (slot == null || slot.status == AccountStatus.OVERDRAWN) {
+        return null;
+      }
+
+      long balance = Math.subtractExact(slot.balanceCents, amountCents);
+      segment.journal.appendWithdrawn(accountNumber, amountCents);
+      slot.balanceCents = balance;
+      return slot.toAccount();
+    }
+  }
+
+  /**
+   * Close the account.
+   *
+   * @param accountNumber unique account number
+   * @return false if the account doesn't exist
+   */
+  public boolean close(long accountNumber) {
+    Segment segment = segment(accountNumber);
+
+    synchronized (segment) {
+      Slot slot = segment.accounts.get(accountNumber);
+      if (slot == null) {
+        return false;
+      }
+
+      segment.journal.appendClosed(accountNumber);
+      slot.close();
+      return true;
+    }
+  }
+
+  private Segment segment(long accountNumber) {
+    // Murmur3 finalizer mixes all bits into the low bits, so regularly spaced account numbers spread evenly too.
+    long hash = accountNumber;
+    hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+    hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return segments[(int) hash & (segments.length - 1)];
+  }
+
+  private Path segmentJournalFile(int segment) {
+    return journalFile.resolveSibling(journalFile.getFileName() + "." + segment);
+  }
+
+  /**
+   * Accounts are assigned to segments by the number of segments, journals written with another number of segments
+   * would be replayed into wrong segments.
+   */
+  private void checkJournalSegments(int size) {
+    boolean written = Files.exists(segmentJournalFile(0));
+
+    if (written && (!Files.exists(segmentJournalFile(size - 1)) || Files.exists(segmentJournalFile(size)))) {
+      throw new IllegalStateException("Ledger journals " + journalFile + ".* were written with another number of "
+          + "segments than account-service.ledger.segments=" + segmentCount + ".");
+    }
+  }
+
+  /**
+   * Accounts of one segment and their journal, guarded by the segment's lock.
+   */
+  private static final class Segment {
+
+    private final LongObjectMap<Slot> accounts = new LongObjectMap<>(1024);
+
+    private LedgerJournal journal;
+  }
+
+  /**
+   * Mutable state of one account.
+   */
+  private static final class Slot {
+
+    private final long accountNumber;
+
+    private final long customerNumber;
+
+    private final String customerName;
+
+    private long balanceCents;
+
+    private AccountStatus status;
+
+    private Slot(long accountNumber, long customerNumber, String customerName, long balanceCents,
+                 AccountStatus status) {
+      this.accountNumber = accountNumber;
+      this.customerNumber = customerNumber;
+      this.customerName = customerName;
+      this.balanceCents = balanceCents;
+      this.status = status;
+    }
+
+    private void close() {
+      status = AccountStatus.CLOSED;
+      balanceCents = 0;
+    }
+
+    private AccountLedger toAccount() {
+      return new AccountLedger(accountNumber, customerNumber, customerName, fromCents(balanceCents), status);
+    }
+  }
+
+  /**
+   * Applies journal records on startup, before any request is served.
+   */
+  private final class Replay implements LedgerJournal.Handler {
+
+    @Override
+    public void created(long accountNumber, long customerNumber, String customerName, long balanceCents,
+                        AccountStatus status) {
+      segment(accountNumber).accounts.putIfAbsent(accountNumber,
+          new Slot(accountNumber, customerNumber, customerName, balanceCents, status));
+    }
+
+    @Override
+    public void deposited(long accountNumber, long amountCents) {
+      segment(accountNumber).accounts.get(accountNumber).balanceCents += amountCents;
+    }
+
+    @Override
+    public void withdrawn(long accountNumber, long amountCents) {
+      segment(accountNumber).accounts.get(accountNumber).balanceCents -= amountCents;
+    }
+
+    @Override
+    public void closed(long accountNumber) {
+      segment(accountNumber).accounts.get(accountNumber).close();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * One deposit or withdrawal of an account, an append-only record of the account journal.
+ */
+@Entity
+// Movements are read per account, ranged by account version.
+@Table(name = "account_movement", indexes = {
+    @Index(name = "account_movement_account_version_idx", columnList = "accountNumber, accountVersion")
+})
+@Data
+@NoArgsConstructor
+public class AccountMovementJpa {
+
+  @Id
+  @GeneratedValue(generator = "account_movement_id_generator")
+  @SequenceGenerator(name = "account_movement_id_generator", sequenceName = "account_movement_seq",
+      allocationSize = 50)
+  private Long id;
+
+  @NonNull
+  private Long accountNumber;
+
+  @NonNull
+  private TransactionType type;
+
+  @NonNull
+  private BigDecimal amount;
+
+  /**
+   * Version of the account after the balance update which applied the movement.
+   */
+  @NonNull
+  private Long accountVersion;
+
+  @NonNull
+  private Instant postedAt;
+
+  public AccountMovementJpa(Long accountNumber, TransactionType type, BigDecimal amount, Long accountVersion,
+                            Instant postedAt) {
+    this.accountNumber = accountNumber;
+    this.type = type;
+    this.amount = amount;
+    this.accountVersion = accountVersion;
+    this.postedAt = postedAt;
+  }
+}
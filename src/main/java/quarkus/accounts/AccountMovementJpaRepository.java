@@ -0,0 +1,51 @@
+package quarkus.accounts;
+
+import io.micrometer.core.annotation.Timed;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import java.math.BigDecimal;
+import java.time.Instant;
+import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.TypedQuery;
+
+// Time spent in the db by every repository method.
+@Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+@ApplicationScoped
+public class AccountMovementJpaRepository implements PanacheRepository<AccountMovementJpa> {
+
+  /**
+   * Sum of movements applied after the given account version and posted up to the given time.
+   *
+   * @return deposits minus withdrawals
+   */
+  public BigDecimal sumAfterVersion(Long accountNumber, long accountVersion, Instant postedUntil) {
+    return sum("m.accountVersion > ?2 and m.postedAt <= ?3", accountNumber, accountVersion, postedUntil);
+  }
+
+  /**
+   * Sum of movements posted after the given time and applied up to the given account version.
+   *
+   * @return deposits minus withdrawals
+   */
+  public BigDecimal sumPostedAfter(Long accountNumber, Instant postedAfter, long accountVersion) {
+    return sum("m.postedAt > ?2 and m.accountVersion <= ?3", accountNumber, postedAfter, accountVersion);
+  }
+
+  private BigDecimal sum(String condition, Long accountNumber, Object second, Object third) {
+    TypedQuery<Object[]> query = getEntityManager().createQuery(
+        "select m.type, sum(m.amount) from AccountMovementJpa m where m.accountNumber = ?1 and " + condition
+            + " group by m.type", Object[].class);
+
+    BigDecimal sum = BigDecimal.ZERO;
+
+    for (Object[] row : query
+        .setParameter(1, accountNumber)
+        .setParameter(2, second)
+        .setParameter(3, third)
+        .getResultList()) {
+      BigDecimal amount = (BigDecimal) row[1];
+      sum = row[0] == TransactionType.DEPOSIT ? sum.add(amount) : sum.subtract(amount);
+    }
+
+    return sum;
+  }
+}
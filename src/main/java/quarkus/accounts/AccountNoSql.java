@@ -12,6 +12,9 @@ import lombok.NonNull;
 @NoArgsConstructor
 public class AccountNoSql {
 
+  static final String MISSING_FIELDS_MESSAGE =
+      "Account number, customer number, customer name, balance and status must be set.";
+
   /**
    * MongoDB's default id field.
    *
@@ -35,6 +38,15 @@ public class AccountNoSql {
   @NonNull
   private AccountStatus accountStatus = AccountStatus.OPEN;
 
+  /**
+   * Whether all fields required by the db are set. Accounts read from requests may miss some, {@link NonNull} checks
+   * only the values passed to the setters.
+   */
+  static boolean hasRequiredFields(AccountNoSql account) {
+    return account.accountNumber != null && account.customerNumber != null && account.customerName != null
+        && account.balance != null && account.accountStatus != null;
+  }
+
   public void markOverdrawn() {
     accountStatus = AccountStatus.OVERDRAWN;
   }
@@ -0,0 +1,47 @@
+package quarkus.accounts;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.smallrye.mutiny.Uni;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import lombok.NonNull;
+
+/**
+ * Account caches of the MongoDB resources.
+ *
+ * <p>{@link AccountNoSqlRepository} and {@link AccountNoSqlPanacheRepository} read the same {@code account}
+ * collection, each through its own cache, so every write to the collection, including writes of the reactive
+ * repositories, invalidates both caches.
+ */
+@ApplicationScoped
+public class AccountNoSqlCaches {
+
+  @Inject
+  @CacheName(AccountNoSqlRepository.ACCOUNT_CACHE)
+  Cache accountNoSqlCache;
+
+  @Inject
+  @CacheName(AccountNoSqlPanacheRepository.ACCOUNT_CACHE)
+  Cache accountNoSqlPanacheCache;
+
+  /**
+   * Remove the account from both account caches.
+   *
+   * @param accountNumber unique account number
+   */
+  public void invalidate(@NonNull Long accountNumber) {
+    accountNoSqlCache.invalidate(accountNumber).await().indefinitely();
+    accountNoSqlPanacheCache.invalidate(accountNumber).await().indefinitely();
+  }
+
+  /**
+   * Remove the account from both account caches without blocking, for the reactive resources.
+   *
+   * @param accountNumber unique account number
+   */
+  public Uni<Void> invalidateAsync(@NonNull Long accountNumber) {
+    return accountNoSqlCache.invalidate(accountNumber)
+        .chain(() -> accountNoSqlPanacheCache.invalidate(accountNumber));
+  }
+}
@@ -0,0 +1,110 @@
+package quarkus.accounts;
+
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+
+/**
+ * BSON codec of {@link AccountNoSql} db entity.
+ *
+ * <p>Reads and writes BSON directly from / to the account, without intermediate {@link org.bson.Document}.
+ * Fields not mapped to {@link AccountNoSql} are skipped.
+ */
+public class AccountNoSqlCodec implements CollectibleCodec<AccountNoSql> {
+
+  static final String ID = "_id";
+
+  static final String ACCOUNT_NUMBER = "accountNumber";
+
+  static final String CUSTOMER_NUMBER = "customerNumber";
+
+  static final String CUSTOMER_NAME = "customerName";
+
+  static final String BALANCE = "balance";
+
+  static final String ACCOUNT_STATUS = "accountStatus";
+
+  @Override
+  public void encode(BsonWriter writer, AccountNoSql account, EncoderContext encoderContext) {
+    writer.writeStartDocument();
+
+    if (account.get_id() != null) {
+      writer.writeObjectId(ID, new ObjectId(account.get_id()));
+    }
+
+    writer.writeInt64(ACCOUNT_NUMBER, required(account.getAccountNumber(), ACCOUNT_NUMBER));
+    writer.writeInt64(CUSTOMER_NUMBER, required(account.getCustomerNumber(), CUSTOMER_NUMBER));
+    writer.writeString(CUSTOMER_NAME, required(account.getCustomerName(), CUSTOMER_NAME));
+    writer.writeDecimal128(BALANCE, new Decimal128(required(account.getBalance(), BALANCE)));
+    writer.writeString(ACCOUNT_STATUS, required(account.getAccountStatus(), ACCOUNT_STATUS).name());
+
+    writer.writeEndDocument();
+  }
+
+  private static <T> T required(T value, String field) {
+    if (value == null) {
+      throw new IllegalArgumentException("Account field " + field + " is required, it can't be null.");
+    }
+
+    return value;
+  }
+
+  @Override
+  public AccountNoSql decode(BsonReader reader, DecoderContext decoderContext) {
+    AccountNoSql account = new AccountNoSql();
+
+    reader.readStartDocument();
+
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      switch (reader.readName()) {
+        case ID -> account.set_id(reader.readObjectId().toHexString());
+        case ACCOUNT_NUMBER -> account.setAccountNumber(reader.readInt64());
+        case CUSTOMER_NUMBER -> account.setCustomerNumber(reader.readInt64());
+        case CUSTOMER_NAME -> account.setCustomerName(reader.readString());
+        case BALANCE -> account.setBalance(reader.readDecimal128().bigDecimalValue());
+        case ACCOUNT_STATUS -> account.setAccountStatus(AccountStatus.valueOf(reader.readString()));
+        default -> reader.skipValue();
+      }
+    }
+
+    reader.readEndDocument();
+
+    return account;
+  }
+
+  @Override
+  public Class<AccountNoSql> getEncoderClass() {
+    return AccountNoSql.class;
+  }
+
+  /**
+   * New accounts get their id generated here, so it's known to the application right after the insert.
+   */
+  @Override
+  public AccountNoSql generateIdIfAbsentFromDocument(AccountNoSql account) {
+    if (!documentHasId(account)) {
+      account.set_id(new ObjectId().toHexString());
+    }
+    return account;
+  }
+
+  @Override
+  public boolean documentHasId(AccountNoSql account) {
+    return account.get_id() != null;
+  }
+
+  @Override
+  public BsonValue getDocumentId(AccountNoSql account) {
+    if (!documentHasId(account)) {
+      throw new IllegalStateException("The account does not contain an _id");
+    }
+    return new BsonObjectId(new ObjectId(account.get_id()));
+  }
+}
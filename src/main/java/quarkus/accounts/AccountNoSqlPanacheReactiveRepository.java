@@ -0,0 +1,92 @@
+package quarkus.accounts;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Updates.inc;
+
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import io.quarkus.mongodb.panache.reactive.ReactivePanacheMongoRepository;
+import io.smallrye.mutiny.Uni;
+import java.math.BigDecimal;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import lombok.NonNull;
+
+/**
+ * Reactive Panache MongoDB repository with OOB provided CRUD methods.
+ *
+ * <p>Reactive counterpart of {@link AccountNoSqlPanacheRepository}. All the operations return {@code Uni} or
+ * {@code Multi} and no thread is blocked while waiting for MongoDB. Writes invalidate the account caches of the
+ * blocking MongoDB resources, see {@link AccountNoSqlCaches}.
+ */
+@ApplicationScoped
+public class AccountNoSqlPanacheReactiveRepository implements ReactivePanacheMongoRepository<AccountNoSqlPanache> {
+
+  @Inject
+  AccountNoSqlCaches caches;
+
+  /**
+   * Find account with given account number.
+   *
+   * @param accountNumber unique account number
+   * @return account, or {@code null} item if the account doesn't exist
+   */
+  public Uni<AccountNoSqlPanache> findByAccountNumber(@NonNull Long accountNumber) {
+    return find("accountNumber", accountNumber).firstResult();
+  }
+
+  /**
+   * Insert new account.
+   */
+  public Uni<AccountNoSqlPanache> insert(@NonNull AccountNoSqlPanache account) {
+    return persist(account)
+        // Not found account may be cached.
+        .call(() -> caches.invalidateAsync(account.getAccountNumber()));
+  }
+
+  /**
+   * Atomically close the account in one db round trip.
+   *
+   * @param accountNumber unique account number
+   * @return closed account, or {@code null} item if the account doesn't exist
+   */
+  public Uni<AccountNoSqlPanache> close(@NonNull Long accountNumber) {
+    return mongoCollection().findOneAndUpdate(
+        eq("accountNumber", accountNumber),
+        AccountNoSqlRepository.CLOSE_ACCOUNT,
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER))
+        .call(() -> caches.invalidateAsync(accountNumber));
+  }
+
+  /**
+   * Atomically add funds to the account in one db round trip.
+   *
+   * @param accountNumber unique account number
+   * @param amount        deposited amount
+   * @return updated account, or {@code null} item if the account doesn't exist
+   */
+  public Uni<AccountNoSqlPanache> deposit(@NonNull Long accountNumber, @NonNull BigDecimal amount) {
+    return mongoCollection().findOneAndUpdate(
+        eq("accountNumber", accountNumber),
+        inc("balance", amount),
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER))
+        .call(() -> caches.invalidateAsync(accountNumber));
+  }
+
+  /**
+   * Atomically withdraw funds from the account in one db round trip.
+   *
+   * @param accountNumber unique account number
+   * @param amount        withdrawn amount
+   * @return updated account, or {@code null} item if the account doesn't exist or it's overdrawn
+   */
+  public Uni<AccountNoSqlPanache> withdraw(@NonNull Long accountNumber, @NonNull BigDecimal amount) {
+    return mongoCollection().findOneAndUpdate(
+        and(eq("accountNumber", accountNumber), ne("accountStatus", AccountStatus.OVERDRAWN.name())),
+        inc("balance", amount.negate()),
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER))
+        .call(() -> caches.invalidateAsync(accountNumber));
+  }
+}
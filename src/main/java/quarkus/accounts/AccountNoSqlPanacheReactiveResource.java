@@ -0,0 +1,92 @@
+package quarkus.accounts;
+
+import io.smallrye.mutiny.Uni;
+import java.util.List;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Reactive REST endpoint for {@link AccountNoSqlPanacheReactiveRepository}.
+ *
+ * <p>Reactive counterpart of {@link AccountNoSqlPanacheResource}. Methods return {@code Uni}, so the request
+ * doesn't hold a worker thread while waiting for MongoDB.
+ */
+@Path("/accounts-nosql-panache-reactive-repository")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class AccountNoSqlPanacheReactiveResource {
+
+  @Inject
+  AccountNoSqlPanacheReactiveRepository repository;
+
+  @GET
+  public Uni<List<AccountNoSqlPanache>> allAccounts() {
+    return repository.listAll();
+  }
+
+  @GET
+  @Path("/{accountNumber}")
+  public Uni<AccountNoSqlPanache> getAccount(@PathParam("accountNumber") Long accountNumber) {
+    return repository
+        .findByAccountNumber(accountNumber)
+        .onItem().ifNull().failWith(() -> accountNotFound(accountNumber));
+  }
+
+  @POST
+  public Uni<Response> createAccount(AccountNoSqlPanache account) {
+    // Be careful - Panache's .persist() will persist account with our custom document's id if provided.
+    if (account.getId() != null) {
+      throw new WebApplicationException("Id was invalidly set on request.", 400);
+    }
+
+    return repository
+        .insert(account)
+        .onFailure(AccountNoSqlRepository::isDuplicateKey).transform(e -> new WebApplicationException(
+            "Account with " + account.getAccountNumber() + " already exists.", 409))
+        .map(persisted -> Response.status(201).entity(persisted).build());
+  }
+
+  @PUT
+  @Path("{accountNumber}/withdrawal")
+  public Uni<AccountNoSqlPanache> withdrawal(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    return repository
+        .withdraw(accountNumber, amount.toBigDecimal())
+        // Withdrawal was not applied, find out why.
+        .onItem().ifNull().switchTo(() -> repository
+            .findByAccountNumber(accountNumber)
+            .onItem().transformToUni(account -> Uni.createFrom().<AccountNoSqlPanache>failure(account == null
+                ? accountNotFound(accountNumber)
+                : new WebApplicationException("Account is overdrawn, no further withdrawals permitted", 409))));
+  }
+
+  @PUT
+  @Path("{accountNumber}/deposit")
+  public Uni<AccountNoSqlPanache> deposit(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    return repository
+        .deposit(accountNumber, amount.toBigDecimal())
+        .onItem().ifNull().failWith(() -> accountNotFound(accountNumber));
+  }
+
+  @DELETE
+  @Path("{accountNumber}")
+  public Uni<Response> closeAccount(@PathParam("accountNumber") Long accountNumber) {
+    return repository
+        .close(accountNumber)
+        .onItem().ifNull().failWith(() -> accountNotFound(accountNumber))
+        .replaceWith(() -> Response.noContent().build());
+  }
+
+  private static WebApplicationException accountNotFound(Long accountNumber) {
+    return new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+  }
+}
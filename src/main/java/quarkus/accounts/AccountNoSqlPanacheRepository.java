@@ -1,9 +1,27 @@
 package quarkus.accounts;
 
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Updates.inc;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReturnDocument;
+import io.micrometer.core.annotation.Timed;
+import io.quarkus.cache.CacheResult;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import lombok.NonNull;
+import org.bson.types.ObjectId;
 
 /**
  * Panache MongoDB repository with OOB provided CRUD methods.
@@ -14,6 +32,11 @@ import lombok.NonNull;
 @ApplicationScoped
 public class AccountNoSqlPanacheRepository implements PanacheMongoRepository<AccountNoSqlPanache> {
 
+  static final String ACCOUNT_CACHE = "account-nosql-panache";
+
+  @Inject
+  AccountNoSqlCaches caches;
+
   /**
    * Find account with given account number.
    *
@@ -21,7 +44,115 @@ public class AccountNoSqlPanacheRepository implements PanacheMongoRepository<Acc
    *
    * @param accountNumber unique account number
    */
+  @Timed(value = "account.db", extraTags = {"store", "nosql-panache"}, histogram = true)
   public Optional<AccountNoSqlPanache> findByAccountNumber(@NonNull Long accountNumber) {
     return find("accountNumber", accountNumber).firstResultOptional();
   }
+
+  /**
+   * Find account with given account number through the account cache.
+   *
+   * <p>Returned account is shared by all callers, so it must be used only for reading. For updates use
+   * {@link #findByAccountNumber(Long)}.
+   *
+   * @param accountNumber unique account number
+   */
+  @CacheResult(cacheName = ACCOUNT_CACHE)
+  public Optional<AccountNoSqlPanache> findCachedByAccountNumber(@NonNull Long accountNumber) {
+    return findByAccountNumber(accountNumber);
+  }
+
+  /**
+   * Remove the account from the account caches of both MongoDB resources.
+   *
+   * @param accountNumber unique account number
+   */
+  public void invalidateCached(@NonNull Long accountNumber) {
+    caches.invalidate(accountNumber);
+  }
+
+  /**
+   * Atomically add funds to the account in one db round trip.
+   *
+   * <p>Example of using the underlying MongoDB collection for operations not provided by Panache.
+   *
+   * @param accountNumber unique account number
+   * @param amount        deposited amount
+   * @return updated account, or empty if the account doesn't exist
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql-panache"}, histogram = true)
+  public Optional<AccountNoSqlPanache> deposit(@NonNull Long accountNumber, @NonNull BigDecimal amount) {
+    AccountNoSqlPanache account = mongoCollection().findOneAndUpdate(
+        eq("accountNumber", accountNumber),
+        inc("balance", amount),
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+
+    invalidateCached(accountNumber);
+
+    return Optional.ofNullable(account);
+  }
+
+  /**
+   * Atomically close the account in one db round trip.
+   *
+   * @param accountNumber unique account number
+   * @return closed account, or empty if the account doesn't exist
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql-panache"}, histogram = true)
+  public Optional<AccountNoSqlPanache> close(@NonNull Long accountNumber) {
+    AccountNoSqlPanache account = mongoCollection().findOneAndUpdate(
+        eq("accountNumber", accountNumber),
+        AccountNoSqlRepository.CLOSE_ACCOUNT,
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+
+    invalidateCached(accountNumber);
+
+    return Optional.ofNullable(account);
+  }
+
+  /**
+   * Atomically withdraw funds from the account in one db round trip.
+   *
+   * <p>Withdrawal is not applied to an overdrawn account. The status is checked by the update filter,
+   * so concurrent updates of the same account can't bypass it.
+   *
+   * @param accountNumber unique account number
+   * @param amount        withdrawn amount
+   * @return updated account, or empty if the account doesn't exist or it's overdrawn
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql-panache"}, histogram = true)
+  public Optional<AccountNoSqlPanache> withdraw(@NonNull Long accountNumber, @NonNull BigDecimal amount) {
+    AccountNoSqlPanache account = mongoCollection().findOneAndUpdate(
+        and(eq("accountNumber", accountNumber), ne("accountStatus", AccountStatus.OVERDRAWN.name())),
+        inc("balance", amount.negate()),
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+
+    invalidateCached(accountNumber);
+
+    return Optional.ofNullable(account);
+  }
+
+  /**
+   * Insert all accounts by one unordered {@code insertMany}.
+   *
+   * <p>Panache's {@code persist(Iterable)} uses ordered insert, which stops on the first failed account.
+   * Unordered insert inserts all other accounts anyway. Ids are generated here, as Panache would do it.
+   *
+   * @param accounts new accounts
+   * @return errors of failed accounts by their position in {@code accounts}, empty if all accounts were inserted
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql-panache"}, histogram = true)
+  public Map<Integer, BulkWriteError> insertAll(@NonNull List<AccountNoSqlPanache> accounts) {
+    accounts.forEach(account -> account.setId(new ObjectId()));
+
+    try {
+      mongoCollection().insertMany(accounts, new InsertManyOptions().ordered(false));
+      return Map.of();
+    } catch (MongoBulkWriteException e) {
+      return e.getWriteErrors().stream().collect(Collectors.toMap(BulkWriteError::getIndex, error -> error));
+    } finally {
+      // Not found accounts may be cached.
+      accounts.forEach(account -> invalidateCached(account.getAccountNumber()));
+    }
+  }
 }
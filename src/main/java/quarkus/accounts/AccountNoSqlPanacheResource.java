@@ -1,10 +1,17 @@
 package quarkus.accounts;
 
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
-import javax.json.Json;
-import javax.json.JsonObjectBuilder;
+import javax.json.bind.Jsonb;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -16,8 +23,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import javax.ws.rs.ext.ExceptionMapper;
-import javax.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 /**
  * REST endpoint for {@link AccountNoSqlPanacheRepository}.
@@ -36,16 +42,41 @@ public class AccountNoSqlPanacheResource {
   @Inject
   AccountNoSqlPanacheRepository repository;
 
+  @Inject
+  Jsonb jsonb;
+
+  @ConfigProperty(name = "account-service.batch.chunk-size")
+  int batchChunkSize;
+
+  @ConfigProperty(name = "account-service.deposit-coalescing.enabled")
+  boolean depositCoalescingEnabled;
+
+  @ConfigProperty(name = "account-service.deposit-coalescing.window-millis")
+  long depositCoalescingWindowMillis;
+
+  @ConfigProperty(name = "account-service.deposit-coalescing.await-timeout-millis")
+  long depositCoalescingAwaitTimeoutMillis;
+
+  private DepositCoalescer<Optional<AccountNoSqlPanache>> depositCoalescer;
+
+  @PostConstruct
+  void init() {
+    depositCoalescer = new DepositCoalescer<>(repository::deposit, depositCoalescingWindowMillis,
+        depositCoalescingAwaitTimeoutMillis);
+  }
+
   @GET
+  @Produces({MediaType.APPLICATION_JSON, AccountCborWriter.APPLICATION_CBOR})
   public List<AccountNoSqlPanache> allAccounts() {
     return repository.listAll();
   }
 
   @GET
   @Path("/{accountNumber}")
+  @Produces({MediaType.APPLICATION_JSON, AccountCborWriter.APPLICATION_CBOR})
   public AccountNoSqlPanache getAccount(@PathParam("accountNumber") Long accountNumber) {
     return repository
-        .findByAccountNumber(accountNumber)
+        .findCachedByAccountNumber(accountNumber)
         .orElseThrow(() -> new WebApplicationException("Account with " + accountNumber + " does not exist.", 404));
   }
 
@@ -57,81 +88,132 @@ public class AccountNoSqlPanacheResource {
       throw new WebApplicationException("Id was invalidly set on request.", 400);
     }
 
-    repository.persist(account);
+    try {
+      repository.persist(account);
+    } catch (MongoWriteException e) {
+      if (AccountNoSqlRepository.isDuplicateKey(e)) {
+        throw new WebApplicationException("Account with " + account.getAccountNumber() + " already exists.", 409);
+      }
+      throw e;
+    }
+
+    // Not found account may be cached.
+    repository.invalidateCached(account.getAccountNumber());
 
     return Response.status(201).entity(account).build();
   }
 
-  @PUT
-  @Path("{accountNumber}/withdrawal")
-  public AccountNoSqlPanache withdrawal(@PathParam("accountNumber") Long accountNumber, String amount) {
-    AccountNoSqlPanache account = repository
-        .findByAccountNumber(accountNumber)
-        .orElseThrow(() -> new WebApplicationException("Account with " + accountNumber + " does not exist.", 404));
+  /**
+   * Creates accounts sent as JSON array.
+   *
+   * <p>Accounts are inserted in chunks, each chunk by one unordered {@code insertMany}.
+   */
+  @POST
+  @Path("/batch")
+  public List<BatchItemResult> createAccounts(List<AccountNoSqlPanache> accounts) {
+    if (accounts == null) {
+      throw new WebApplicationException("Accounts are missing in request.", 400);
+    }
+
+    return createAccounts(accounts.iterator());
+  }
+
+  /**
+   * Creates accounts sent as NDJSON, one account per line.
+   *
+   * <p>Request body is read lazily chunk by chunk, so it's never held in memory as a whole.
+   */
+  @POST
+  @Path("/batch")
+  @Consumes(NdjsonOutput.APPLICATION_NDJSON)
+  public List<BatchItemResult> createAccountsNdjson(InputStream accounts) {
+    return createAccounts(NdjsonInput.read(jsonb, accounts, AccountNoSqlPanache.class));
+  }
+
+  private List<BatchItemResult> createAccounts(Iterator<AccountNoSqlPanache> accounts) {
+    List<BatchItemResult> results = new ArrayList<>();
 
-    if (account.getAccountStatus().equals(AccountStatus.OVERDRAWN)) {
-      throw new WebApplicationException(
-          "Account is overdrawn, no further withdrawals permitted",
-          409);
+    Chunks.forEachChunk(accounts, batchChunkSize, chunk -> results.addAll(createChunk(chunk, results.size())));
+
+    return results;
+  }
+
+  private List<BatchItemResult> createChunk(List<AccountNoSqlPanache> chunk, int firstIndex) {
+    List<AccountNoSqlPanache> newAccounts = new ArrayList<>(chunk.size());
+    List<BatchItemResult> results = new ArrayList<>(chunk.size());
+    List<BatchItemResult> createdResults = new ArrayList<>(chunk.size());
+
+    for (int i = 0; i < chunk.size(); i++) {
+      AccountNoSqlPanache account = chunk.get(i);
+      int index = firstIndex + i;
+
+      if (account == null) {
+        results.add(BatchItemResult.failure(index, null, 400, "Account is missing or malformed."));
+      } else if (account.getId() != null) {
+        results.add(BatchItemResult.failure(index, account.getAccountNumber(), 400,
+            "Id was invalidly set on request."));
+      } else {
+        BatchItemResult result = BatchItemResult.success(index, account.getAccountNumber(), 201);
+        newAccounts.add(account);
+        results.add(result);
+        createdResults.add(result);
+      }
     }
 
-    account.withdrawFunds(new BigDecimal(amount));
+    if (!newAccounts.isEmpty()) {
+      // Unique index on account number rejects duplicates, other accounts of the chunk are inserted anyway.
+      Map<Integer, BulkWriteError> errors = repository.insertAll(newAccounts);
 
-    repository.update(account);
+      errors.forEach((position, error) -> {
+        BatchItemResult result = createdResults.get(position);
 
-    return account;
+        if (AccountNoSqlRepository.isDuplicateKey(error)) {
+          result.fail(409, "Account with " + result.getAccountNumber() + " already exists.");
+        } else {
+          result.fail(500, error.getMessage());
+        }
+      });
+    }
+
+    return results;
   }
 
   @PUT
-  @Path("{accountNumber}/deposit")
-  public AccountNoSqlPanache deposit(@PathParam("accountNumber") Long accountNumber, String amount) {
-    AccountNoSqlPanache account = repository
-        .findByAccountNumber(accountNumber)
-        .orElseThrow(() -> new WebApplicationException("Account with " + accountNumber + " does not exist.", 404));
-
-    account.addFunds(new BigDecimal(amount));
+  @Path("{accountNumber}/withdrawal")
+  public AccountNoSqlPanache withdrawal(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    return repository
+        .withdraw(accountNumber, amount.toBigDecimal())
+        .orElseThrow(() -> {
+          // Withdrawal was not applied, find out why.
+          if (repository.findByAccountNumber(accountNumber).isEmpty()) {
+            return new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+          }
+
+          return new WebApplicationException(
+              "Account is overdrawn, no further withdrawals permitted",
+              409);
+        });
+  }
 
-    repository.update(account);
+  @PUT
+  @Path("{accountNumber}/deposit")
+  public AccountNoSqlPanache deposit(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    BigDecimal depositAmount = amount.toBigDecimal();
+    Optional<AccountNoSqlPanache> account = depositCoalescingEnabled
+        ? depositCoalescer.deposit(accountNumber, depositAmount)
+        : repository.deposit(accountNumber, depositAmount);
 
-    return account;
+    return account
+        .orElseThrow(() -> new WebApplicationException("Account with " + accountNumber + " does not exist.", 404));
   }
 
   @DELETE
   @Path("{accountNumber}")
   public Response closeAccount(@PathParam("accountNumber") Long accountNumber) {
-    AccountNoSqlPanache account = repository
-        .findByAccountNumber(accountNumber)
+    repository
+        .close(accountNumber)
         .orElseThrow(() -> new WebApplicationException("Account with " + accountNumber + " does not exist.", 404));
 
-    account.close();
-
-    repository.update(account);
-
     return Response.noContent().build();
   }
-
-  /**
-   * Implements ExceptionMapper for all Exception types.
-   */
-  @Provider
-  public static class ErrorMapper implements ExceptionMapper<Exception> {
-
-    @Override
-    public Response toResponse(Exception exception) {
-      int code = 500;
-      if (exception instanceof WebApplicationException webAppException) {
-        code = webAppException.getResponse().getStatus();
-      }
-
-      JsonObjectBuilder entityBuilder =
-          Json.createObjectBuilder().add("exceptionType", exception.getClass().getName())
-              .add("code", code);
-
-      if (exception.getMessage() != null) {
-        entityBuilder.add("error", exception.getMessage());
-      }
-
-      return Response.status(code).entity(entityBuilder.build()).build();
-    }
-  }
 }
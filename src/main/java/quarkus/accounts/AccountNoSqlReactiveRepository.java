@@ -0,0 +1,122 @@
+package quarkus.accounts;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.inc;
+import static quarkus.accounts.AccountNoSqlRepository.ACCOUNT_NUMBER_COL;
+import static quarkus.accounts.AccountNoSqlRepository.ACCOUNT_PROJECTION;
+import static quarkus.accounts.AccountNoSqlRepository.ACCOUNT_TABLE;
+import static quarkus.accounts.AccountNoSqlRepository.CLOSE_ACCOUNT;
+import static quarkus.accounts.AccountNoSqlRepository.NOT_OVERDRAWN;
+
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import io.quarkus.mongodb.reactive.ReactiveMongoClient;
+import io.quarkus.mongodb.reactive.ReactiveMongoCollection;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import java.math.BigDecimal;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import lombok.NonNull;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Reactive repository for {@link AccountNoSql} db entity.
+ *
+ * <p>Reactive counterpart of {@link AccountNoSqlRepository}, using only the reactive MongoDB client API and
+ * {@link AccountNoSqlCodec}. No thread is blocked while waiting for MongoDB. Writes invalidate the account caches of
+ * the blocking MongoDB resources, see {@link AccountNoSqlCaches}.
+ */
+@ApplicationScoped
+public class AccountNoSqlReactiveRepository {
+
+  private static final FindOneAndUpdateOptions RETURN_UPDATED_ACCOUNT = new FindOneAndUpdateOptions()
+      .returnDocument(ReturnDocument.AFTER)
+      .projection(ACCOUNT_PROJECTION);
+
+  @Inject
+  ReactiveMongoClient mongoClient;
+
+  @Inject
+  AccountNoSqlCaches caches;
+
+  @ConfigProperty(name = "account-service.mongodb.database-name")
+  String dbName;
+
+  private ReactiveMongoCollection<AccountNoSql> collection;
+
+  @PostConstruct
+  void init() {
+    ReactiveMongoCollection<AccountNoSql> accounts =
+        mongoClient.getDatabase(dbName).getCollection(ACCOUNT_TABLE, AccountNoSql.class);
+    collection = accounts.withCodecRegistry(AccountNoSqlRepository.withAccountCodec(accounts.getCodecRegistry()));
+  }
+
+  public Multi<AccountNoSql> findAll() {
+    return collection.find();
+  }
+
+  /**
+   * Find account with given account number.
+   *
+   * @param accountNumber unique account number
+   * @return account, or {@code null} item if the account doesn't exist
+   */
+  public Uni<AccountNoSql> findByAccountNumber(@NonNull Long accountNumber) {
+    return collection
+        .find(eq(ACCOUNT_NUMBER_COL, accountNumber))
+        .toUni();
+  }
+
+  public Uni<Void> insert(@NonNull AccountNoSql account) {
+    return collection
+        .insertOne(account)
+        // Not found account may be cached.
+        .call(() -> caches.invalidateAsync(account.getAccountNumber()))
+        .replaceWithVoid();
+  }
+
+  /**
+   * Atomically close the account in one db round trip.
+   *
+   * @param accountNumber unique account number
+   * @return closed account, or {@code null} item if the account doesn't exist
+   */
+  public Uni<AccountNoSql> close(@NonNull Long accountNumber) {
+    return collection
+        .findOneAndUpdate(eq(ACCOUNT_NUMBER_COL, accountNumber), CLOSE_ACCOUNT, RETURN_UPDATED_ACCOUNT)
+        .call(() -> caches.invalidateAsync(accountNumber));
+  }
+
+  /**
+   * Atomically add funds to the account in one db round trip.
+   *
+   * @param accountNumber unique account number
+   * @param amount        deposited amount
+   * @return updated account, or {@code null} item if the account doesn't exist
+   */
+  public Uni<AccountNoSql> deposit(@NonNull Long accountNumber, @NonNull BigDecimal amount) {
+    return collection
+        .findOneAndUpdate(eq(ACCOUNT_NUMBER_COL, accountNumber), inc(AccountNoSqlCodec.BALANCE, amount),
+            RETURN_UPDATED_ACCOUNT)
+        .call(() -> caches.invalidateAsync(accountNumber));
+  }
+
+  /**
+   * Atomically withdraw funds from the account in one db round trip.
+   *
+   * @param accountNumber unique account number
+   * @param amount        withdrawn amount
+   * @return updated account, or {@code null} item if the account doesn't exist or it's overdrawn
+   */
+  public Uni<AccountNoSql> withdraw(@NonNull Long accountNumber, @NonNull BigDecimal amount) {
+    return collection
+        .findOneAndUpdate(
+            and(eq(ACCOUNT_NUMBER_COL, accountNumber), NOT_OVERDRAWN),
+            inc(AccountNoSqlCodec.BALANCE, amount.negate()),
+            RETURN_UPDATED_ACCOUNT)
+        .call(() -> caches.invalidateAsync(accountNumber));
+  }
+}
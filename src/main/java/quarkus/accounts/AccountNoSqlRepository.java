@@ -1,17 +1,56 @@
 package quarkus.accounts;
 
+import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.set;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.cache.CacheResult;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import lombok.NonNull;
 import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
 import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 
@@ -19,82 +58,407 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
  * Repository for {@link AccountNoSql} db entity.
  *
  * <p>This implementation use only MongoDB Java driver API. It not uses mappers, or autogenerated repository methods.
+ * Accounts are read and written directly as BSON by {@link AccountNoSqlCodec}.
  */
 @ApplicationScoped
 public class AccountNoSqlRepository {
 
-  private static final String ACCOUNT_TABLE = "account";
+  static final String ACCOUNT_TABLE = "account";
 
-  private static final String ACCOUNT_NUMBER_COL = "accountNumber";
+  static final String ACCOUNT_NUMBER_COL = AccountNoSqlCodec.ACCOUNT_NUMBER;
+
+  /**
+   * Only fields mapped to {@link AccountNoSql} are read from the db.
+   */
+  static final Bson ACCOUNT_PROJECTION = include(AccountNoSqlCodec.ID, ACCOUNT_NUMBER_COL,
+      AccountNoSqlCodec.CUSTOMER_NUMBER, AccountNoSqlCodec.CUSTOMER_NAME, AccountNoSqlCodec.BALANCE,
+      AccountNoSqlCodec.ACCOUNT_STATUS);
+
+  /**
+   * Withdrawals are not permitted from overdrawn accounts.
+   */
+  static final Bson NOT_OVERDRAWN = ne(AccountNoSqlCodec.ACCOUNT_STATUS, AccountStatus.OVERDRAWN.name());
+
+  /**
+   * Closing sets only status and balance, so it can't overwrite a concurrent update of other fields with a stale
+   * copy of the account.
+   */
+  static final Bson CLOSE_ACCOUNT = combine(
+      set(AccountNoSqlCodec.ACCOUNT_STATUS, AccountStatus.CLOSED.name()),
+      set(AccountNoSqlCodec.BALANCE, new Decimal128(BigDecimal.ZERO)));
+
+  /**
+   * Atomic balance updates return the updated account.
+   */
+  private static final FindOneAndUpdateOptions RETURN_UPDATED_ACCOUNT = new FindOneAndUpdateOptions()
+      .returnDocument(ReturnDocument.AFTER)
+      .projection(ACCOUNT_PROJECTION);
+
+  static final String ACCOUNT_CACHE = "account-nosql";
+
+  private static final String ACCOUNT_COUNT = "accountCount";
+
+  private static final String TOTAL_BALANCE = "totalBalance";
 
   @Inject
   MongoClient mongoClient;
 
+  @Inject
+  MeterRegistry registry;
+
+  @Inject
+  AccountNoSqlCaches caches;
+
   @ConfigProperty(name = "account-service.mongodb.database-name")
   private String dbName;
 
-  public List<AccountNoSql> findAll() {
-    List<AccountNoSql> accounts = new ArrayList<>();
+  @ConfigProperty(name = "account-service.mongodb.stream-batch-size")
+  int streamBatchSize;
 
-    try (MongoCursor<Document> cursor = getCollection().find().iterator()) {
-      while (cursor.hasNext()) {
-        Document document = cursor.next();
-        AccountNoSql account = mapDocumentToAccountNoSql(document);
-        accounts.add(account);
-      }
-    }
+  /**
+   * Account collection, resolved once and shared - collections are immutable and thread-safe.
+   */
+  private MongoCollection<AccountNoSql> collection;
 
-    return accounts;
+  @PostConstruct
+  void init() {
+    MongoCollection<AccountNoSql> accounts =
+        mongoClient.getDatabase(dbName).getCollection(ACCOUNT_TABLE, AccountNoSql.class);
+    collection = accounts.withCodecRegistry(withAccountCodec(accounts.getCodecRegistry()));
   }
 
-  public AccountNoSql findByAccountNumber(@NonNull Long accountNumber) {
-    Document document = getCollection().find(eq(ACCOUNT_NUMBER_COL, accountNumber)).first();
+  /**
+   * Add {@link AccountNoSqlCodec} to the given codec registry.
+   */
+  static CodecRegistry withAccountCodec(CodecRegistry codecRegistry) {
+    return CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(new AccountNoSqlCodec()), codecRegistry);
+  }
 
-    if (document == null) {
-      return null;
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public List<AccountNoSql> findAll() {
+    return getCollection().find().into(new ArrayList<>());
+  }
+
+  /**
+   * Pass all accounts, one by one, to the given consumer.
+   *
+   * <p>Accounts are mapped as they are read from the db cursor, so memory usage doesn't depend on the number of
+   * accounts. The cursor fetches {@code account-service.mongodb.stream-batch-size} documents per round trip. Time
+   * spent reading the cursor, without the consumer, is recorded by {@link DbCursorTimer}.
+   *
+   * @param consumer called for every account
+   */
+  public void forEachAccount(@NonNull Consumer<AccountNoSql> consumer) {
+    long start = System.nanoTime();
+
+    try (MongoCursor<AccountNoSql> cursor = getCollection()
+        .find()
+        .projection(ACCOUNT_PROJECTION)
+        .batchSize(streamBatchSize)
+        .iterator()) {
+      DbCursorTimer.forEach(registry.timer("account.db.cursor", "store", "nosql"), start, cursor, consumer);
     }
+  }
 
-    return mapDocumentToAccountNoSql(document);
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public AccountNoSql findByAccountNumber(@NonNull Long accountNumber) {
+    return getCollection().find(eq(ACCOUNT_NUMBER_COL, accountNumber)).first();
+  }
+
+  /**
+   * Find account with given account number through the account cache.
+   *
+   * <p>Returned account is shared by all callers, so it must be used only for reading.
+   *
+   * @param accountNumber unique account number
+   */
+  @CacheResult(cacheName = ACCOUNT_CACHE)
+  public AccountNoSql findCachedByAccountNumber(@NonNull Long accountNumber) {
+    return findByAccountNumber(accountNumber);
   }
 
+  /**
+   * Insert new account.
+   *
+   * <p>Account's id is generated by {@link AccountNoSqlCodec} and set to the account.
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
   public void insert(AccountNoSql account) {
-    Document document = mapAccountNoSqlToDocument(account);
+    getCollection().insertOne(account);
 
-    getCollection().insertOne(document);
+    // Not found account may be cached.
+    invalidateCached(account.getAccountNumber());
   }
 
-  public void replace(AccountNoSql account) {
-    Document replaceDocument = mapAccountNoSqlToDocument(account);
+  /**
+   * Insert all accounts by one unordered {@code insertMany}.
+   *
+   * <p>Unordered insert doesn't stop on the first failed account, all other accounts are inserted anyway.
+   *
+   * @param accounts new accounts
+   * @return errors of failed accounts by their position in {@code accounts}, empty if all accounts were inserted
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public Map<Integer, BulkWriteError> insertAll(@NonNull List<AccountNoSql> accounts) {
+    try {
+      getCollection().insertMany(accounts, new InsertManyOptions().ordered(false));
+      return Map.of();
+    } catch (MongoBulkWriteException e) {
+      return e.getWriteErrors().stream().collect(Collectors.toMap(BulkWriteError::getIndex, error -> error));
+    } finally {
+      // Not found accounts may be cached.
+      accounts.forEach(account -> invalidateCached(account.getAccountNumber()));
+    }
+  }
 
-    getCollection().replaceOne(eq(ACCOUNT_NUMBER_COL, account.getAccountNumber()), replaceDocument);
+  /**
+   * Check whether the write error was caused by duplicate unique key, e.g. account number.
+   */
+  static boolean isDuplicateKey(BulkWriteError error) {
+    return ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY;
   }
 
-  private MongoCollection<Document> getCollection() {
-    return mongoClient.getDatabase(dbName).getCollection(ACCOUNT_TABLE);
+  /**
+   * Check whether the write failed on duplicate unique key, e.g. account number.
+   */
+  static boolean isDuplicateKey(Throwable e) {
+    return e instanceof MongoWriteException writeException
+        && writeException.getError().getCategory() == ErrorCategory.DUPLICATE_KEY;
   }
 
-  private Document mapAccountNoSqlToDocument(@NonNull AccountNoSql account) {
-    return new Document()
-        .append("id", account.get_id())
-        .append(ACCOUNT_NUMBER_COL, account.getAccountNumber())
-        .append("customerNumber", account.getCustomerNumber())
-        .append("customerName", account.getCustomerName())
-        .append("balance", account.getBalance())
-        .append("accountStatus", account.getAccountStatus());
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public void replace(AccountNoSql account) {
+    getCollection().replaceOne(eq(ACCOUNT_NUMBER_COL, account.getAccountNumber()), account);
+
+    invalidateCached(account.getAccountNumber());
   }
 
-  private AccountNoSql mapDocumentToAccountNoSql(@NonNull Document document) {
-    AccountNoSql account = new AccountNoSql();
+  /**
+   * Atomically add funds to the account in one db round trip.
+   *
+   * @param accountNumber unique account number
+   * @param amount        deposited amount
+   * @return updated account, or {@code null} if the account doesn't exist
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public AccountNoSql deposit(@NonNull Long accountNumber, @NonNull BigDecimal amount) {
+    AccountNoSql account = getCollection().findOneAndUpdate(
+        eq(ACCOUNT_NUMBER_COL, accountNumber),
+        inc(AccountNoSqlCodec.BALANCE, amount),
+        RETURN_UPDATED_ACCOUNT);
+
+    invalidateCached(accountNumber);
 
-    account.set_id(document.getObjectId("_id").toString());
-    account.setAccountNumber(document.getLong(ACCOUNT_NUMBER_COL));
-    account.setCustomerNumber(document.getLong("customerNumber"));
-    account.setCustomerName(document.getString("customerName"));
-    account.setAccountStatus(AccountStatus.valueOf(document.getString("accountStatus")));
+    return account;
+  }
 
-    // @TODO 2023-02-01 TOKU: Is this official approach how to get BigDecimal from db?
-    account.setBalance((document.get("balance", Decimal128.class)).bigDecimalValue());
+  /**
+   * Atomically close the account in one db round trip.
+   *
+   * @param accountNumber unique account number
+   * @return closed account, or {@code null} if the account doesn't exist
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public AccountNoSql close(@NonNull Long accountNumber) {
+    AccountNoSql account = getCollection().findOneAndUpdate(
+        eq(ACCOUNT_NUMBER_COL, accountNumber),
+        CLOSE_ACCOUNT,
+        RETURN_UPDATED_ACCOUNT);
+
+    invalidateCached(accountNumber);
+
+    return account;
+  }
+
+  /**
+   * Atomically withdraw funds from the account in one db round trip.
+   *
+   * <p>Withdrawal is not applied to an overdrawn account. The status is checked by the update filter,
+   * so concurrent updates of the same account can't bypass it.
+   *
+   * @param accountNumber unique account number
+   * @param amount        withdrawn amount
+   * @return updated account, or {@code null} if the account doesn't exist or it's overdrawn
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public AccountNoSql withdraw(@NonNull Long accountNumber, @NonNull BigDecimal amount) {
+    AccountNoSql account = getCollection().findOneAndUpdate(
+        and(eq(ACCOUNT_NUMBER_COL, accountNumber), NOT_OVERDRAWN),
+        inc(AccountNoSqlCodec.BALANCE, amount.negate()),
+        RETURN_UPDATED_ACCOUNT);
+
+    invalidateCached(accountNumber);
 
     return account;
   }
+
+  /**
+   * Create indexes used by account queries, if they don't exist yet.
+   *
+   * <p>The collection is shared with {@link AccountNoSqlPanacheRepository}, so the indexes are used by both.
+   */
+  public void createIndexes() {
+    getCollection().createIndex(Indexes.ascending(ACCOUNT_NUMBER_COL), new IndexOptions().unique(true));
+    getCollection().createIndex(Indexes.ascending(AccountNoSqlCodec.CUSTOMER_NUMBER));
+    // Filtered pages of accounts, e.g. overdrawn accounts, are read in id order.
+    getCollection().createIndex(Indexes.ascending(AccountNoSqlCodec.ACCOUNT_STATUS, AccountNoSqlCodec.ID));
+  }
+
+  /**
+   * Find next page of accounts matching the filter, ordered by id (keyset pagination).
+   *
+   * @param filter   account conditions
+   * @param afterId  id of the last account from the previous page, {@code null} for the first page
+   * @param pageSize maximum number of returned accounts
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public List<AccountNoSql> findPageAfter(@NonNull AccountFilter filter, String afterId, int pageSize) {
+    List<Bson> conditions = filterConditions(filter);
+
+    if (afterId != null) {
+      conditions.add(gt(AccountNoSqlCodec.ID, new ObjectId(afterId)));
+    }
+
+    return getCollection()
+        .find(conditions.isEmpty() ? new Document() : and(conditions))
+        .projection(ACCOUNT_PROJECTION)
+        .sort(Sorts.ascending(AccountNoSqlCodec.ID))
+        .limit(pageSize)
+        .into(new ArrayList<>(pageSize));
+  }
+
+  /**
+   * Count accounts and sum their balances per customer, by one aggregation pipeline.
+   *
+   * @param filter              conditions of the summed accounts
+   * @param afterCustomerNumber last customer number of the previous page, {@code null} for the first page
+   * @param pageSize            maximum number of returned customers
+   * @return summaries ordered by customer number
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public List<CustomerSummary> summarizeByCustomer(@NonNull AccountFilter filter, Long afterCustomerNumber,
+                                                   int pageSize) {
+    List<Bson> conditions = filterConditions(filter);
+
+    // Matched before grouping, so the customer number index is used.
+    if (afterCustomerNumber != null) {
+      conditions.add(gt(AccountNoSqlCodec.CUSTOMER_NUMBER, afterCustomerNumber));
+    }
+
+    List<Bson> pipeline = List.of(
+        Aggregates.match(conditions.isEmpty() ? new Document() : and(conditions)),
+        Aggregates.group("$" + AccountNoSqlCodec.CUSTOMER_NUMBER,
+            Accumulators.sum(ACCOUNT_COUNT, 1),
+            Accumulators.sum(TOTAL_BALANCE, "$" + AccountNoSqlCodec.BALANCE)),
+        Aggregates.sort(Sorts.ascending(AccountNoSqlCodec.ID)),
+        Aggregates.limit(pageSize));
+
+    List<CustomerSummary> summaries = new ArrayList<>();
+
+    for (Document document : getCollection().withDocumentClass(Document.class).aggregate(pipeline)) {
+      summaries.add(new CustomerSummary(
+          document.getLong(AccountNoSqlCodec.ID),
+          document.get(ACCOUNT_COUNT, Number.class).longValue(),
+          toBigDecimal(document.get(TOTAL_BALANCE))));
+    }
+
+    return summaries;
+  }
+
+  private static BigDecimal toBigDecimal(Object sum) {
+    if (sum instanceof Decimal128 decimal) {
+      return decimal.bigDecimalValue();
+    }
+
+    // $sum is Int32 0 when none of the grouped accounts has a numeric balance.
+    return sum instanceof Number number ? new BigDecimal(number.toString()) : BigDecimal.ZERO;
+  }
+
+  private static List<Bson> filterConditions(AccountFilter filter) {
+    List<Bson> conditions = new ArrayList<>();
+
+    if (filter.getStatus() != null) {
+      conditions.add(eq(AccountNoSqlCodec.ACCOUNT_STATUS, filter.getStatus().name()));
+    }
+    if (filter.getCustomerNumber() != null) {
+      conditions.add(eq(AccountNoSqlCodec.CUSTOMER_NUMBER, filter.getCustomerNumber()));
+    }
+    if (filter.getMinBalance() != null) {
+      conditions.add(gte(AccountNoSqlCodec.BALANCE, new Decimal128(filter.getMinBalance())));
+    }
+    if (filter.getMaxBalance() != null) {
+      conditions.add(lte(AccountNoSqlCodec.BALANCE, new Decimal128(filter.getMaxBalance())));
+    }
+
+    return conditions;
+  }
+
+  /**
+   * Find statuses of the given accounts.
+   *
+   * @param accountNumbers account numbers
+   * @return statuses of existing accounts by account number
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public Map<Long, AccountStatus> findStatuses(@NonNull Collection<Long> accountNumbers) {
+    Map<Long, AccountStatus> statuses = new HashMap<>();
+
+    if (accountNumbers.isEmpty()) {
+      return statuses;
+    }
+
+    for (Document document : getCollection()
+        .withDocumentClass(Document.class)
+        .find(in(ACCOUNT_NUMBER_COL, accountNumbers))
+        .projection(include(ACCOUNT_NUMBER_COL, AccountNoSqlCodec.ACCOUNT_STATUS))) {
+      statuses.put(document.getLong(ACCOUNT_NUMBER_COL),
+          AccountStatus.valueOf(document.getString(AccountNoSqlCodec.ACCOUNT_STATUS)));
+    }
+
+    return statuses;
+  }
+
+  /**
+   * Apply summed deposits and withdrawals to accounts by one unordered {@code bulkWrite} of {@code $inc} updates.
+   *
+   * <p>Withdrawals are not applied to overdrawn accounts.
+   *
+   * @param deposits    deposited amount by account number
+   * @param withdrawals withdrawn amount by account number
+   */
+  @Timed(value = "account.db", extraTags = {"store", "nosql"}, histogram = true)
+  public void applyBalanceChanges(@NonNull Map<Long, BigDecimal> deposits,
+                                  @NonNull Map<Long, BigDecimal> withdrawals) {
+    List<WriteModel<AccountNoSql>> updates = new ArrayList<>(deposits.size() + withdrawals.size());
+
+    deposits.forEach((accountNumber, amount) -> updates.add(new UpdateOneModel<>(
+        eq(ACCOUNT_NUMBER_COL, accountNumber),
+        inc(AccountNoSqlCodec.BALANCE, amount))));
+
+    withdrawals.forEach((accountNumber, amount) -> updates.add(new UpdateOneModel<>(
+        and(eq(ACCOUNT_NUMBER_COL, accountNumber), NOT_OVERDRAWN),
+        inc(AccountNoSqlCodec.BALANCE, amount.negate()))));
+
+    if (!updates.isEmpty()) {
+      try {
+        getCollection().bulkWrite(updates, new BulkWriteOptions().ordered(false));
+      } finally {
+        deposits.keySet().forEach(this::invalidateCached);
+        withdrawals.keySet().forEach(this::invalidateCached);
+      }
+    }
+  }
+
+  /**
+   * Remove the account from the account caches of both MongoDB resources.
+   *
+   * @param accountNumber unique account number
+   */
+  public void invalidateCached(@NonNull Long accountNumber) {
+    caches.invalidate(accountNumber);
+  }
+
+  private MongoCollection<AccountNoSql> getCollection() {
+    return collection;
+  }
 }
@@ -1,8 +1,18 @@
 package quarkus.accounts;
 
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import io.smallrye.mutiny.Uni;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.json.bind.Jsonb;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -11,9 +21,13 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 /**
  * REST endpoint for {@link AccountNoSql} db entity.
@@ -25,21 +39,120 @@ public class AccountNoSqlResource {
   @Inject
   AccountNoSqlRepository accountNoSqlRepository;
 
+  @Inject
+  Jsonb jsonb;
+
+  @Inject
+  VirtualThreads virtualThreads;
+
+  @ConfigProperty(name = "account-service.batch.chunk-size")
+  int batchChunkSize;
+
+  @ConfigProperty(name = "account-service.page.default-size")
+  int defaultPageSize;
+
+  @ConfigProperty(name = "account-service.page.max-size")
+  int maxPageSize;
+
+  @ConfigProperty(name = "account-service.deposit-coalescing.enabled")
+  boolean depositCoalescingEnabled;
+
+  @ConfigProperty(name = "account-service.deposit-coalescing.window-millis")
+  long depositCoalescingWindowMillis;
+
+  @ConfigProperty(name = "account-service.deposit-coalescing.await-timeout-millis")
+  long depositCoalescingAwaitTimeoutMillis;
+
+  private DepositCoalescer<AccountNoSql> depositCoalescer;
+
+  @PostConstruct
+  void init() {
+    depositCoalescer = new DepositCoalescer<>(accountNoSqlRepository::deposit, depositCoalescingWindowMillis,
+        depositCoalescingAwaitTimeoutMillis);
+  }
+
   @GET
+  @Produces({MediaType.APPLICATION_JSON, AccountCborWriter.APPLICATION_CBOR})
   public List<AccountNoSql> allAccounts() {
     return accountNoSqlRepository.findAll();
   }
 
+  /**
+   * Returns one page of accounts matching the filter, ordered by id.
+   *
+   * @param filter account conditions, e.g. {@code status=OVERDRAWN}
+   * @param after  cursor returned with the previous page, not set for the first page
+   * @param size   page size, default page size is used if not set
+   */
   @GET
-  @Path("/{accountNumber}")
-  public AccountNoSql getAccount(@PathParam("accountNumber") Long accountNumber) {
-    AccountNoSql account = accountNoSqlRepository.findByAccountNumber(accountNumber);
+  @Path("/page")
+  @Produces({MediaType.APPLICATION_JSON, AccountCborWriter.APPLICATION_CBOR})
+  public AccountPage<AccountNoSql> accountsPage(@BeanParam AccountFilter filter, @QueryParam("after") String after,
+                                                @QueryParam("size") Integer size) {
+    int pageSize = pageSize(size);
 
-    if (account == null) {
-      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+    if (after != null && !ObjectId.isValid(after)) {
+      throw new WebApplicationException("Cursor " + after + " is not valid.", 400);
     }
 
-    return account;
+    List<AccountNoSql> accounts = accountNoSqlRepository.findPageAfter(filter, after, pageSize);
+
+    String nextCursor = accounts.size() < pageSize ? null : accounts.get(accounts.size() - 1).get_id();
+
+    return new AccountPage<>(accounts, nextCursor);
+  }
+
+  /**
+   * Returns number of accounts and total balance per customer, ordered by customer number.
+   *
+   * <p>Accounts are grouped and summed by the db.
+   *
+   * @param filter conditions of the summed accounts
+   * @param after  last customer number of the previous page, not set for the first page
+   * @param size   page size, default page size is used if not set
+   */
+  @GET
+  @Path("/customers")
+  public List<CustomerSummary> customerSummaries(@BeanParam AccountFilter filter, @QueryParam("after") Long after,
+                                                 @QueryParam("size") Integer size) {
+    return accountNoSqlRepository.summarizeByCustomer(filter, after, pageSize(size));
+  }
+
+  private int pageSize(Integer size) {
+    int pageSize = size == null ? defaultPageSize : size;
+
+    if (pageSize < 1 || pageSize > maxPageSize) {
+      throw new WebApplicationException("Page size must be between 1 and " + maxPageSize + ".", 400);
+    }
+
+    return pageSize;
+  }
+
+  /**
+   * Streams all accounts as NDJSON.
+   *
+   * <p>Accounts are written to the response as they are read from the db cursor, without loading them all into memory.
+   */
+  @GET
+  @Path("/stream")
+  @Produces(NdjsonOutput.APPLICATION_NDJSON)
+  public StreamingOutput streamAccounts() {
+    return NdjsonOutput.of(jsonb, accountNoSqlRepository::forEachAccount);
+  }
+
+  @GET
+  @Path("/{accountNumber}")
+  @Produces({MediaType.APPLICATION_JSON, AccountCborWriter.APPLICATION_CBOR})
+  public Uni<AccountNoSql> getAccount(@PathParam("accountNumber") Long accountNumber) {
+    return virtualThreads.run("AccountNoSqlResource.getAccount", () -> {
+      AccountNoSql account = accountNoSqlRepository.findCachedByAccountNumber(accountNumber);
+
+      if (account == null) {
+        throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+      }
+
+      return account;
+    });
   }
 
   @POST
@@ -48,62 +161,179 @@ public class AccountNoSqlResource {
       throw new WebApplicationException("Id was invalidly set on request.", 400);
     }
 
-    accountNoSqlRepository.insert(account);
+    if (!AccountNoSql.hasRequiredFields(account)) {
+      throw new WebApplicationException(AccountNoSql.MISSING_FIELDS_MESSAGE, 400);
+    }
+
+    try {
+      accountNoSqlRepository.insert(account);
+    } catch (MongoWriteException e) {
+      if (AccountNoSqlRepository.isDuplicateKey(e)) {
+        throw new WebApplicationException("Account with " + account.getAccountNumber() + " already exists.", 409);
+      }
+      throw e;
+    }
 
     return Response.status(201).entity(account).build();
   }
 
-  @PUT
-  @Path("{accountNumber}/withdrawal")
-  public AccountNoSql withdrawal(@PathParam("accountNumber") Long accountNumber, String amount) {
-    AccountNoSql account = accountNoSqlRepository.findByAccountNumber(accountNumber);
+  /**
+   * Creates accounts sent as JSON array.
+   *
+   * <p>Accounts are inserted in chunks, each chunk by one unordered {@code insertMany}.
+   */
+  @POST
+  @Path("/batch")
+  public List<BatchItemResult> createAccounts(List<AccountNoSql> accounts) {
+    if (accounts == null) {
+      throw new WebApplicationException("Accounts are missing in request.", 400);
+    }
 
-    if (account == null) {
-      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+    return createAccounts(accounts.iterator());
+  }
+
+  /**
+   * Creates accounts sent as NDJSON, one account per line.
+   *
+   * <p>Request body is read lazily chunk by chunk, so it's never held in memory as a whole.
+   */
+  @POST
+  @Path("/batch")
+  @Consumes(NdjsonOutput.APPLICATION_NDJSON)
+  public List<BatchItemResult> createAccountsNdjson(InputStream accounts) {
+    return createAccounts(NdjsonInput.read(jsonb, accounts, AccountNoSql.class));
+  }
+
+  private List<BatchItemResult> createAccounts(Iterator<AccountNoSql> accounts) {
+    List<BatchItemResult> results = new ArrayList<>();
+
+    Chunks.forEachChunk(accounts, batchChunkSize, chunk -> results.addAll(createChunk(chunk, results.size())));
+
+    return results;
+  }
+
+  private List<BatchItemResult> createChunk(List<AccountNoSql> chunk, int firstIndex) {
+    List<AccountNoSql> newAccounts = new ArrayList<>(chunk.size());
+    List<BatchItemResult> results = new ArrayList<>(chunk.size());
+    List<BatchItemResult> createdResults = new ArrayList<>(chunk.size());
+
+    for (int i = 0; i < chunk.size(); i++) {
+      AccountNoSql account = chunk.get(i);
+      int index = firstIndex + i;
+
+      if (account == null) {
+        results.add(BatchItemResult.failure(index, null, 400, "Account is missing or malformed."));
+      } else if (account.get_id() != null) {
+        results.add(BatchItemResult.failure(index, account.getAccountNumber(), 400,
+            "Id was invalidly set on request."));
+      } else if (!AccountNoSql.hasRequiredFields(account)) {
+        results.add(BatchItemResult.failure(index, account.getAccountNumber(), 400,
+            AccountNoSql.MISSING_FIELDS_MESSAGE));
+      } else {
+        BatchItemResult result = BatchItemResult.success(index, account.getAccountNumber(), 201);
+        newAccounts.add(account);
+        results.add(result);
+        createdResults.add(result);
+      }
     }
 
-    if (account.getAccountStatus().equals(AccountStatus.OVERDRAWN)) {
-      throw new WebApplicationException(
-          "Account is overdrawn, no further withdrawals permitted",
-          409);
+    if (!newAccounts.isEmpty()) {
+      // Unique index on account number rejects duplicates, other accounts of the chunk are inserted anyway.
+      Map<Integer, BulkWriteError> errors = accountNoSqlRepository.insertAll(newAccounts);
+
+      errors.forEach((position, error) -> {
+        BatchItemResult result = createdResults.get(position);
+
+        if (AccountNoSqlRepository.isDuplicateKey(error)) {
+          result.fail(409, "Account with " + result.getAccountNumber() + " already exists.");
+        } else {
+          result.fail(500, error.getMessage());
+        }
+      });
+    }
+
+    return results;
+  }
+
+  /**
+   * Posts deposits and withdrawals of many accounts at once.
+   *
+   * <p>Movements are processed in chunks. Movements of one chunk are grouped per account and applied by one
+   * batch of balance updates.
+   */
+  @POST
+  @Path("/transactions/batch")
+  public List<BatchItemResult> postTransactions(List<AccountTransaction> transactions) {
+    if (transactions == null) {
+      throw new WebApplicationException("Transactions are missing in request.", 400);
     }
 
-    account.withdrawFunds(new BigDecimal(amount));
+    List<BatchItemResult> results = new ArrayList<>(transactions.size());
 
-    accountNoSqlRepository.replace(account);
+    Chunks.forEachChunk(transactions.iterator(), batchChunkSize,
+        chunk -> results.addAll(postTransactionChunk(chunk, results.size())));
 
-    return account;
+    return results;
   }
 
-  @PUT
-  @Path("{accountNumber}/deposit")
-  public AccountNoSql deposit(@PathParam("accountNumber") Long accountNumber, String amount) {
-    AccountNoSql account = accountNoSqlRepository.findByAccountNumber(accountNumber);
+  private List<BatchItemResult> postTransactionChunk(List<AccountTransaction> chunk, int firstIndex) {
+    Map<Long, AccountStatus> statuses = accountNoSqlRepository.findStatuses(TransactionBatch.accountNumbers(chunk));
+    TransactionBatch batch = TransactionBatch.plan(chunk, firstIndex, statuses::get);
 
-    if (account == null) {
-      throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+    try {
+      accountNoSqlRepository.applyBalanceChanges(batch.getDeposits(), batch.getWithdrawals());
+    } catch (RuntimeException e) {
+      batch.failApplied(e.getMessage());
     }
 
-    account.addFunds(new BigDecimal(amount));
+    return batch.getResults();
+  }
+
+  @PUT
+  @Path("{accountNumber}/withdrawal")
+  public Uni<AccountNoSql> withdrawal(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    return virtualThreads.run("AccountNoSqlResource.withdrawal", () -> {
+      AccountNoSql account = accountNoSqlRepository.withdraw(accountNumber, amount.toBigDecimal());
+
+      if (account == null) {
+        // Withdrawal was not applied, find out why.
+        if (accountNoSqlRepository.findByAccountNumber(accountNumber) == null) {
+          throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+        }
 
-    accountNoSqlRepository.replace(account);
+        throw new WebApplicationException(
+            "Account is overdrawn, no further withdrawals permitted",
+            409);
+      }
 
-    return account;
+      return account;
+    });
+  }
+
+  @PUT
+  @Path("{accountNumber}/deposit")
+  public Uni<AccountNoSql> deposit(@PathParam("accountNumber") Long accountNumber, Amount amount) {
+    return virtualThreads.run("AccountNoSqlResource.deposit", () -> {
+      BigDecimal depositAmount = amount.toBigDecimal();
+      AccountNoSql account = depositCoalescingEnabled
+          ? depositCoalescer.deposit(accountNumber, depositAmount)
+          : accountNoSqlRepository.deposit(accountNumber, depositAmount);
+
+      if (account == null) {
+        throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
+      }
+
+      return account;
+    });
   }
 
   @DELETE
   @Path("{accountNumber}")
   public Response closeAccount(@PathParam("accountNumber") Long accountNumber) {
-    AccountNoSql account = accountNoSqlRepository.findByAccountNumber(accountNumber);
-
-    if (account == null) {
+    if (accountNoSqlRepository.close(accountNumber) == null) {
       throw new WebApplicationException("Account with " + accountNumber + " does not exist.", 404);
     }
 
-    account.close();
-
-    accountNoSqlRepository.replace(account);
-
     return Response.noContent().build();
   }
 }
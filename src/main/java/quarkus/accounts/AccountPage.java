@@ -0,0 +1,24 @@
+package quarkus.accounts;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of accounts returned by keyset-paginated listing endpoints.
+ *
+ * <p>{@code nextCursor} is an opaque value to be passed as the {@code after} query parameter to get the next page.
+ * It's {@code null} when there are no more accounts.
+ *
+ * @param <T> account db entity type
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountPage<T> {
+
+  private List<T> accounts;
+
+  private String nextCursor;
+}
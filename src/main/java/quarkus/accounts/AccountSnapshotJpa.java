@@ -0,0 +1,50 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Balance of an account at one account version, including all movements up to that version.
+ */
+@Entity
+@Table(name = "account_snapshot", indexes = {
+    @Index(name = "account_snapshot_account_version_idx", columnList = "accountNumber, accountVersion", unique = true)
+})
+@Data
+@NoArgsConstructor
+public class AccountSnapshotJpa {
+
+  @Id
+  @GeneratedValue(generator = "account_snapshot_id_generator")
+  @SequenceGenerator(name = "account_snapshot_id_generator", sequenceName = "account_snapshot_seq",
+      allocationSize = 50)
+  private Long id;
+
+  @NonNull
+  private Long accountNumber;
+
+  @NonNull
+  private Long accountVersion;
+
+  @NonNull
+  private BigDecimal balance;
+
+  @NonNull
+  private Instant takenAt;
+
+  public AccountSnapshotJpa(Long accountNumber, Long accountVersion, BigDecimal balance, Instant takenAt) {
+    this.accountNumber = accountNumber;
+    this.accountVersion = accountVersion;
+    this.balance = balance;
+    this.takenAt = takenAt;
+  }
+}
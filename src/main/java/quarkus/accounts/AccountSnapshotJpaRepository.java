@@ -0,0 +1,50 @@
+package quarkus.accounts;
+
+import io.micrometer.core.annotation.Timed;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Sort;
+import java.math.BigDecimal;
+import java.time.Instant;
+import javax.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+// Time spent in the db by every repository method.
+@Timed(value = "account.db", extraTags = {"store", "jpa"}, histogram = true)
+@ApplicationScoped
+public class AccountSnapshotJpaRepository implements PanacheRepository<AccountSnapshotJpa> {
+
+  @ConfigProperty(name = "account-service.journal.snapshot-interval")
+  int snapshotInterval;
+
+  /**
+   * Take snapshot of the account balance, if the account version passed a multiple of the snapshot interval.
+   *
+   * @param accountNumber  unique account number
+   * @param accountVersion account version after the balance change
+   * @param balance        account balance after the balance change
+   * @param versionSteps   by how many versions the balance change increased the account version
+   * @param takenAt        time of the balance change
+   */
+  public void snapshotIfDue(Long accountNumber, long accountVersion, BigDecimal balance, int versionSteps,
+                            Instant takenAt) {
+    if (accountVersion % snapshotInterval < versionSteps) {
+      persist(new AccountSnapshotJpa(accountNumber, accountVersion, balance, takenAt));
+    }
+  }
+
+  /**
+   * Find the last snapshot taken up to the given time.
+   */
+  public AccountSnapshotJpa findLastTakenUntil(Long accountNumber, Instant takenUntil) {
+    return find("accountNumber = ?1 and takenAt <= ?2", Sort.descending("accountVersion"), accountNumber, takenUntil)
+        .firstResult();
+  }
+
+  /**
+   * Find the first snapshot taken after the given time.
+   */
+  public AccountSnapshotJpa findFirstTakenAfter(Long accountNumber, Instant takenAfter) {
+    return find("accountNumber = ?1 and takenAt > ?2", Sort.ascending("accountVersion"), accountNumber, takenAfter)
+        .firstResult();
+  }
+}
@@ -0,0 +1,21 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One movement of bulk transaction posting.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountTransaction {
+
+  private Long accountNumber;
+
+  private TransactionType type;
+
+  private BigDecimal amount;
+}
@@ -0,0 +1,194 @@
+package quarkus.accounts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.ext.web.RoutingContext;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Rejects requests with 503 and {@code Retry-After} when an endpoint has too many requests in flight.
+ *
+ * <p>Every endpoint (resource method) has its own {@link ConcurrencyLimiter}. Reads ({@code GET}) and writes
+ * (other methods) have separate limits configured by {@code account-service.admission.read.*} and
+ * {@code account-service.admission.write.*}, so a spike of writes waiting for db locks doesn't starve reads.
+ *
+ * <p>A rejected request costs no db connection, so the service keeps its latency for the admitted requests instead of
+ * queueing all of them in the connection pools.
+ *
+ * <p>The permit of an admitted request is released by the response filter, or when the HTTP response ends, whichever
+ * comes first. Requests which don't reach the response filter, e.g. failed by an unmapped error or aborted by the
+ * client during streaming, release their permit too.
+ */
+@Provider
+// Runs before other filters, so rejected requests do as little work as possible.
+@Priority(Priorities.AUTHENTICATION - 100)
+public class AdmissionControl implements ContainerRequestFilter, ContainerResponseFilter {
+
+  private static final String PERMIT_PROPERTY = AdmissionControl.class.getName() + ".permit";
+
+  /**
+   * Body of rejected requests, in the format of {@link ErrorMapper}. Built once, rejections
+   * must stay cheap under overload.
+   */
+  private static final String REJECTED_BODY = Json.createObjectBuilder()
+      .add("exceptionType", ServiceUnavailableException.class.getName())
+      .add("code", 503)
+      .add("error", "Too many requests in progress, retry later.")
+      .build()
+      .toString();
+
+  @Context
+  ResourceInfo resourceInfo;
+
+  @Context
+  RoutingContext routingContext;
+
+  @Inject
+  MeterRegistry registry;
+
+  @ConfigProperty(name = "account-service.admission.enabled")
+  boolean enabled;
+
+  @ConfigProperty(name = "account-service.admission.read.initial-limit")
+  int readInitialLimit;
+
+  @ConfigProperty(name = "account-service.admission.read.min-limit")
+  int readMinLimit;
+
+  @ConfigProperty(name = "account-service.admission.read.max-limit")
+  int readMaxLimit;
+
+  @ConfigProperty(name = "account-service.admission.write.initial-limit")
+  int writeInitialLimit;
+
+  @ConfigProperty(name = "account-service.admission.write.min-limit")
+  int writeMinLimit;
+
+  @ConfigProperty(name = "account-service.admission.write.max-limit")
+  int writeMaxLimit;
+
+  @ConfigProperty(name = "account-service.admission.latency-tolerance")
+  double latencyTolerance;
+
+  @ConfigProperty(name = "account-service.admission.retry-after-seconds")
+  int retryAfterSeconds;
+
+  private final Map<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  /**
+   * Limiter and meters of one endpoint.
+   */
+  private static final class Endpoint {
+
+    private final ConcurrencyLimiter limiter;
+
+    private final Counter rejected;
+
+    private Endpoint(ConcurrencyLimiter limiter, Counter rejected) {
+      this.limiter = limiter;
+      this.rejected = rejected;
+    }
+  }
+
+  /**
+   * Permit of an admitted request, released exactly once.
+   */
+  private static final class Permit {
+
+    private final ConcurrencyLimiter limiter;
+
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit(ConcurrencyLimiter limiter) {
+      this.limiter = limiter;
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        limiter.release(System.nanoTime() - startNanos);
+      }
+    }
+  }
+
+  @Override
+  public void filter(ContainerRequestContext request) {
+    Method method = resourceInfo.getResourceMethod();
+
+    if (!enabled || method == null) {
+      return;
+    }
+
+    boolean read = HttpMethod.GET.equals(request.getMethod());
+    Endpoint endpoint = endpoints.computeIfAbsent(method, key -> createEndpoint(key, read));
+
+    if (!endpoint.limiter.tryAcquire()) {
+      endpoint.rejected.increment();
+      request.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+          .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+          .type(MediaType.APPLICATION_JSON)
+          .entity(REJECTED_BODY)
+          .build());
+      return;
+    }
+
+    Permit permit = new Permit(endpoint.limiter);
+    request.setProperty(PERMIT_PROPERTY, permit);
+    routingContext.addEndHandler(ended -> permit.release());
+  }
+
+  @Override
+  public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+    // Rejected requests pass here too, but they hold no permit.
+    if (request.getProperty(PERMIT_PROPERTY) instanceof Permit permit) {
+      permit.release();
+    }
+  }
+
+  private Endpoint createEndpoint(Method method, boolean read) {
+    ConcurrencyLimiter limiter = read
+        ? new ConcurrencyLimiter(readInitialLimit, readMinLimit, readMaxLimit, latencyTolerance)
+        : new ConcurrencyLimiter(writeInitialLimit, writeMinLimit, writeMaxLimit, latencyTolerance);
+
+    Gauge.builder("account.admission.limit", limiter, ConcurrencyLimiter::getLimit)
+        .tags("endpoint", endpoint(method), "budget", budget(read))
+        .register(registry);
+    Gauge.builder("account.admission.in.flight", limiter, ConcurrencyLimiter::getInFlight)
+        .tags("endpoint", endpoint(method), "budget", budget(read))
+        .register(registry);
+    Counter rejected = registry.counter("account.admission.rejected", "endpoint", endpoint(method),
+        "budget", budget(read));
+
+    return new Endpoint(limiter, rejected);
+  }
+
+  private static String endpoint(Method method) {
+    return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+  }
+
+  private static String budget(boolean read) {
+    return read ? "read" : "write";
+  }
+}
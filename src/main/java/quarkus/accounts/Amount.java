@@ -0,0 +1,124 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Amount of a deposit or withdrawal, held as a number of minor units (cents).
+ *
+ * <p>Amount is always greater than zero, with at most {@value #SCALE} decimal places and at most
+ * {@value #MAX_INTEGER_DIGITS} integer digits. It's read from request bodies by {@link AmountReader}, invalid amounts
+ * are rejected by {@link InvalidAmountException} with 400.
+ */
+@EqualsAndHashCode
+public final class Amount {
+
+  /**
+   * Number of decimal places of minor units.
+   */
+  static final int SCALE = 2;
+
+  static final int MAX_INTEGER_DIGITS = 15;
+
+  private final long minorUnits;
+
+  private Amount(long minorUnits) {
+    this.minorUnits = minorUnits;
+  }
+
+  /**
+   * Parse amount from a JSON number, e.g. {@code 154.98}, surrounded by optional whitespace.
+   *
+   * <p>Trailing zeros beyond {@value #SCALE} decimal places are accepted, exponents are not.
+   *
+   * @param bytes ASCII text of the amount
+   * @param from  index of the first byte of the amount
+   * @param to    index after the last byte of the amount
+   * @throws InvalidAmountException if the text is not a valid amount
+   */
+  static Amount parse(byte[] bytes, int from, int to) {
+    while (from < to && isWhitespace(bytes[from])) {
+      from++;
+    }
+
+    while (to > from && isWhitespace(bytes[to - 1])) {
+      to--;
+    }
+
+    boolean negative = from < to && bytes[from] == '-';
+    int i = negative ? from + 1 : from;
+    long units = 0;
+    int integerDigits = 0;
+
+    for (; i < to && isDigit(bytes[i]); i++) {
+      if (++integerDigits > MAX_INTEGER_DIGITS) {
+        throw InvalidAmountException.tooLarge();
+      }
+
+      units = units * 10 + (bytes[i] - '0');
+    }
+
+    int fractionDigits = 0;
+
+    if (i < to && bytes[i] == '.') {
+      int fractionStart = ++i;
+
+      for (; i < to && isDigit(bytes[i]); i++) {
+        if (fractionDigits < SCALE) {
+          units = units * 10 + (bytes[i] - '0');
+          fractionDigits++;
+        } else if (bytes[i] != '0') {
+          throw InvalidAmountException.tooPrecise();
+        }
+      }
+
+      if (i == fractionStart) {
+        throw InvalidAmountException.malformed();
+      }
+    }
+
+    if (integerDigits == 0 || i != to) {
+      throw InvalidAmountException.malformed();
+    }
+
+    for (; fractionDigits < SCALE; fractionDigits++) {
+      units *= 10;
+    }
+
+    if (negative || units == 0) {
+      throw InvalidAmountException.notPositive();
+    }
+
+    return new Amount(units);
+  }
+
+  /**
+   * Parse amount from text, see {@link #parse(byte[], int, int)}.
+   */
+  public static Amount parse(String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+    return parse(bytes, 0, bytes.length);
+  }
+
+  public long getMinorUnits() {
+    return minorUnits;
+  }
+
+  public BigDecimal toBigDecimal() {
+    return BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  @Override
+  public String toString() {
+    return toBigDecimal().toPlainString();
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+}
@@ -0,0 +1,48 @@
+package quarkus.accounts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reads {@link Amount} request bodies of deposits and withdrawals.
+ *
+ * <p>The body is read into a per-thread buffer and parsed from bytes, without creating a string or
+ * {@link java.math.BigDecimal}.
+ */
+@Provider
+@Consumes({MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
+public class AmountReader implements MessageBodyReader<Amount> {
+
+  /**
+   * Longest accepted body, whitespace included.
+   */
+  private static final int MAX_LENGTH = 64;
+
+  // One byte more, to find out the body is too long.
+  private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[MAX_LENGTH + 1]);
+
+  @Override
+  public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return type == Amount.class;
+  }
+
+  @Override
+  public Amount readFrom(Class<Amount> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+      MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+    byte[] buffer = BUFFER.get();
+    int length = entityStream.readNBytes(buffer, 0, buffer.length);
+
+    if (length > MAX_LENGTH) {
+      throw InvalidAmountException.malformed();
+    }
+
+    return Amount.parse(buffer, 0, length);
+  }
+}
@@ -0,0 +1,40 @@
+package quarkus.accounts;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a batch request.
+ *
+ * <p>{@code status} uses HTTP status codes, as if the item was sent by a separate request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+
+  /**
+   * Zero based position of the item in the batch request.
+   */
+  private int index;
+
+  private Long accountNumber;
+
+  private int status;
+
+  private String error;
+
+  static BatchItemResult success(int index, Long accountNumber, int status) {
+    return new BatchItemResult(index, accountNumber, status, null);
+  }
+
+  static BatchItemResult failure(int index, Long accountNumber, int status, String error) {
+    return new BatchItemResult(index, accountNumber, status, error);
+  }
+
+  void fail(int status, String error) {
+    this.status = status;
+    this.error = error;
+  }
+}
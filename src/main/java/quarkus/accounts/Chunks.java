@@ -0,0 +1,43 @@
+package quarkus.accounts;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Splits items of batch requests into chunks processed by one db round trip / transaction.
+ */
+final class Chunks {
+
+  private Chunks() {
+  }
+
+  /**
+   * Pass items to the given consumer in chunks of at most {@code chunkSize} items.
+   *
+   * <p>Items are pulled from the iterator only when the chunk is being filled, so at most one chunk is held
+   * in memory when the iterator reads lazily.
+   *
+   * @param items     items to be split
+   * @param chunkSize maximum number of items in one chunk
+   * @param consumer  called for every chunk
+   * @param <T>       item type
+   */
+  static <T> void forEachChunk(Iterator<T> items, int chunkSize, Consumer<List<T>> consumer) {
+    List<T> chunk = new ArrayList<>(chunkSize);
+
+    while (items.hasNext()) {
+      chunk.add(items.next());
+
+      if (chunk.size() == chunkSize) {
+        consumer.accept(chunk);
+        chunk = new ArrayList<>(chunkSize);
+      }
+    }
+
+    if (!chunk.isEmpty()) {
+      consumer.accept(chunk);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package quarkus.accounts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits number of concurrently processed requests, adapting the limit to the observed latency.
+ *
+ * <p>The limit grows by one while the smoothed latency stays within {@code latencyTolerance} times the lowest latency
+ * seen recently, and shrinks by 10 % when the smoothed latency rises above it. Rising latency means requests queue
+ * for db connections, so admitting more requests would only make every request slower. After shrinking, the limit
+ * doesn't shrink again until a limit's worth of requests finished, so one spike doesn't drop it to the minimum.
+ *
+ * <p>The lowest latency is re-measured every {@code SAMPLE_WINDOW} samples, so the limit recovers when the latency
+ * rises permanently, e.g. after the db moved to a slower host.
+ */
+final class ConcurrencyLimiter {
+
+  private static final int SAMPLE_WINDOW = 1000;
+
+  private static final double DECREASE_FACTOR = 0.9;
+
+  /**
+   * Weight of the latest sample in the smoothed latency.
+   */
+  private static final double SMOOTHING = 0.1;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final int minLimit;
+
+  private final int maxLimit;
+
+  private final double latencyTolerance;
+
+  private volatile int limit;
+
+  // Guarded by this.
+  private long minLatencyNanos = Long.MAX_VALUE;
+
+  private long windowMinLatencyNanos = Long.MAX_VALUE;
+
+  private int windowSamples;
+
+  private double smoothedLatencyNanos;
+
+  private int samplesSinceDecrease;
+
+  /**
+   * Create limiter.
+   *
+   * @param initialLimit     limit before any latency is observed
+   * @param minLimit         the limit never drops below
+   * @param maxLimit         the limit never grows above
+   * @param latencyTolerance how many times latency may exceed the lowest latency before the limit shrinks
+   */
+  ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.latencyTolerance = latencyTolerance;
+  }
+
+  /**
+   * Admit request, if the limit is not reached.
+   *
+   * @return false if the request must be rejected
+   */
+  boolean tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+
+      if (current >= limit) {
+        return false;
+      }
+
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Finish admitted request and adapt the limit to its latency.
+   *
+   * @param latencyNanos how long the request was processed
+   */
+  void release(long latencyNanos) {
+    int concurrency = inFlight.getAndDecrement();
+
+    synchronized (this) {
+      windowMinLatencyNanos = Math.min(windowMinLatencyNanos, latencyNanos);
+      minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+
+      if (++windowSamples == SAMPLE_WINDOW) {
+        minLatencyNanos = windowMinLatencyNanos;
+        windowMinLatencyNanos = Long.MAX_VALUE;
+        windowSamples = 0;
+      }
+
+      smoothedLatencyNanos = smoothedLatencyNanos == 0
+          ? latencyNanos
+          : smoothedLatencyNanos + SMOOTHING * (latencyNanos - smoothedLatencyNanos);
+      samplesSinceDecrease++;
+
+      if (smoothedLatencyNanos > minLatencyNanos * latencyTolerance) {
+        if (samplesSinceDecrease >= limit) {
+          limit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+          samplesSinceDecrease = 0;
+        }
+      } else if (concurrency * 2 >= limit) {
+        // Grow only when the limit is being used, an idle service would grow it without bound otherwise.
+        limit = Math.min(maxLimit, limit + 1);
+      }
+    }
+  }
+
+  int getLimit() {
+    return limit;
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+}
@@ -0,0 +1,69 @@
+package quarkus.accounts;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.connection.ConnectionPoolSettings;
+import io.agroal.api.AgroalDataSource;
+import io.agroal.api.configuration.AgroalConnectionPoolConfiguration;
+import io.quarkus.runtime.LaunchMode;
+import io.quarkus.runtime.StartupEvent;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Logs the effective connection pool configuration on application startup, and warns about settings not meant for
+ * production.
+ */
+@ApplicationScoped
+public class ConnectionPoolReport {
+
+  private static final Logger LOG = Logger.getLogger(ConnectionPoolReport.class);
+
+  @Inject
+  AgroalDataSource dataSource;
+
+  @ConfigProperty(name = "quarkus.hibernate-orm.database.generation")
+  String databaseGeneration;
+
+  @ConfigProperty(name = "quarkus.hibernate-orm.jdbc.statement-batch-size")
+  Optional<Integer> statementBatchSize;
+
+  @ConfigProperty(name = "quarkus.mongodb.min-pool-size")
+  Optional<Integer> mongoMinPoolSize;
+
+  @ConfigProperty(name = "quarkus.mongodb.max-pool-size")
+  Optional<Integer> mongoMaxPoolSize;
+
+  @ConfigProperty(name = "quarkus.mongodb.wait-queue-timeout")
+  Optional<Duration> mongoWaitQueueTimeout;
+
+  @ConfigProperty(name = "quarkus.mongodb.read-preference")
+  Optional<String> mongoReadPreference;
+
+  void onStart(@Observes StartupEvent event) {
+    AgroalConnectionPoolConfiguration pool = dataSource.getConfiguration().connectionPoolConfiguration();
+
+    LOG.infof("JDBC pool: initial size %d, min size %d, max size %d, acquisition timeout %s, statement batch size %s.",
+        pool.initialSize(), pool.minSize(), pool.maxSize(), pool.acquisitionTimeout(),
+        statementBatchSize.map(String::valueOf).orElse("none"));
+
+    // Settings which are not configured are left to the driver, its defaults are in effect.
+    ConnectionPoolSettings mongoDefaults = ConnectionPoolSettings.builder().build();
+
+    LOG.infof("MongoDB pool: min size %d, max size %d, wait queue timeout %s, read preference %s.",
+        mongoMinPoolSize.orElse(mongoDefaults.getMinSize()),
+        mongoMaxPoolSize.orElse(mongoDefaults.getMaxSize()),
+        mongoWaitQueueTimeout.orElse(Duration.ofMillis(mongoDefaults.getMaxWaitTime(TimeUnit.MILLISECONDS))),
+        mongoReadPreference.orElse(ReadPreference.primary().getName()));
+
+    if (!LaunchMode.current().isDevOrTest() && databaseGeneration.startsWith("drop")) {
+      LOG.warnf("SQL tables are dropped on every start (quarkus.hibernate-orm.database.generation=%s), "
+          + "run with the perf profile or set the generation to none.", databaseGeneration);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of accounts and their total balance of one customer.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerSummary {
+
+  private Long customerNumber;
+
+  private Long accountCount;
+
+  private BigDecimal totalBalance;
+}
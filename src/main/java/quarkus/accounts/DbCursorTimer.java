@@ -0,0 +1,48 @@
+package quarkus.accounts;
+
+import io.micrometer.core.instrument.Timer;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Time spent reading db cursors of streaming endpoints.
+ *
+ * <p>Items are passed to the consumer as they are read, the consumer writes them to the response. Only the cursor
+ * reads are recorded, so {@code account.db.cursor} timers don't include serialization and writes to the client.
+ */
+final class DbCursorTimer {
+
+  private DbCursorTimer() {
+  }
+
+  /**
+   * Pass all items of the cursor to the consumer and record the time spent reading the cursor as one sample.
+   *
+   * @param timer      timer to record to
+   * @param startNanos {@link System#nanoTime()} before the query was started, the query execution is recorded too
+   * @param cursor     items read from the db
+   * @param consumer   called for every item
+   */
+  static <T> void forEach(Timer timer, long startNanos, Iterator<T> cursor, Consumer<T> consumer) {
+    long readNanos = 0;
+    long readStart = startNanos;
+
+    try {
+      while (true) {
+        boolean hasNext = cursor.hasNext();
+        T item = hasNext ? cursor.next() : null;
+        readNanos += System.nanoTime() - readStart;
+
+        if (!hasNext) {
+          return;
+        }
+
+        consumer.accept(item);
+        readStart = System.nanoTime();
+      }
+    } finally {
+      timer.record(readNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+}
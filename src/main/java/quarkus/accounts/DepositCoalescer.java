@@ -0,0 +1,177 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import javax.ws.rs.WebApplicationException;
+
+/**
+ * Merges concurrent deposits to the same account into one db write.
+ *
+ * <p>The first deposit to an account opens a batch and becomes its leader. Deposits to the same account arriving
+ * within the coalescing window join the batch. After the window the leader closes the batch and deposits the sum
+ * of all amounts by one write. Every caller then gets the account as updated by the combined write, or the error
+ * of the write.
+ *
+ * <p>No extra threads are used - the leader's request thread, which would do its own write anyway, does the write
+ * for the whole batch. A deposit to a cold account is delayed by the window, so coalescing pays off only for
+ * accounts receiving many deposits per window.
+ *
+ * <p>The leader completes the batch whatever happens to its write. The other callers wait for the leader at most the
+ * await timeout, then they take their amount back from the batch and fail with 503, unless the leader has already
+ * started its write. An amount which is being written is never answered as failed, the caller waits for the outcome
+ * of the write, so a retry can't deposit it twice.
+ *
+ * @param <T> account db entity type
+ */
+final class DepositCoalescer<T> {
+
+  private final Map<Long, Batch<T>> batches = new ConcurrentHashMap<>();
+
+  private final BiFunction<Long, BigDecimal, T> deposit;
+
+  private final long windowNanos;
+
+  private final long awaitTimeoutMillis;
+
+  /**
+   * Create coalescer.
+   *
+   * @param deposit            deposits amount to account with given account number, returns updated account
+   * @param windowMillis       how long the deposits are collected before they are written
+   * @param awaitTimeoutMillis how long the deposits joining a batch wait for its write
+   */
+  DepositCoalescer(BiFunction<Long, BigDecimal, T> deposit, long windowMillis, long awaitTimeoutMillis) {
+    this.deposit = deposit;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.awaitTimeoutMillis = awaitTimeoutMillis;
+  }
+
+  /**
+   * Deposit amount to the account, together with other deposits to the same account arriving within the window.
+   *
+   * @param accountNumber unique account number
+   * @param amount        deposited amount
+   * @return account updated by the combined deposit, as returned by the deposit function
+   */
+  T deposit(Long accountNumber, BigDecimal amount) {
+    Batch<T> batch = batches.compute(accountNumber, (key, current) -> {
+      Batch<T> open = current == null ? new Batch<>(Thread.currentThread()) : current;
+      open.sum = open.sum.add(amount);
+      return open;
+    });
+
+    if (batch.leader == Thread.currentThread()) {
+      LockSupport.parkNanos(windowNanos);
+      return write(accountNumber, batch);
+    }
+
+    return await(accountNumber, amount, batch);
+  }
+
+  private T write(Long accountNumber, Batch<T> batch) {
+    // Deposits arriving from now on open a new batch.
+    batches.remove(accountNumber, batch);
+
+    try {
+      T account = deposit.apply(accountNumber, batch.sum);
+      batch.result.complete(account);
+      return account;
+    } catch (Throwable e) {
+      // Errors too, the batch must be completed whatever happens.
+      batch.result.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private T await(Long accountNumber, BigDecimal amount, Batch<T> batch) {
+    boolean interrupted = false;
+
+    try {
+      try {
+        return batch.result.get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        if (withdraw(accountNumber, amount, batch)) {
+          throw new WebApplicationException("Deposit was not confirmed in time, it was not applied.", 503);
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+        if (withdraw(accountNumber, amount, batch)) {
+          throw new WebApplicationException("Deposit was interrupted, it was not applied.", 503);
+        }
+      }
+
+      // The amount is being written by the leader, which always completes the batch, so its outcome is awaited.
+      return awaitWritten(batch);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException("Coalesced deposit failed.", e.getCause());
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Take the amount back from the batch, if the leader has not started its write yet.
+   *
+   * @return whether the amount was taken back and won't be written
+   */
+  private boolean withdraw(Long accountNumber, BigDecimal amount, Batch<T> batch) {
+    boolean[] withdrawn = {false};
+
+    // The leader removes the batch from the map before it reads the sum, both under the map's lock.
+    batches.computeIfPresent(accountNumber, (key, current) -> {
+      if (current == batch) {
+        current.sum = current.sum.subtract(amount);
+        withdrawn[0] = true;
+      }
+      return current;
+    });
+
+    return withdrawn[0];
+  }
+
+  private static <T> T awaitWritten(Batch<T> batch) throws ExecutionException {
+    boolean interrupted = false;
+
+    try {
+      while (true) {
+        try {
+          return batch.result.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Deposits to one account collected within one window. Modified only under the map's lock.
+   */
+  private static final class Batch<T> {
+
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    private final Thread leader;
+
+    private BigDecimal sum = BigDecimal.ZERO;
+
+    private Batch(Thread leader) {
+      this.leader = leader;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package quarkus.accounts;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Implements ExceptionMapper for all Exception types, shared by all resources.
+ *
+ * <p>Error body is filled into a template serialized once per exception type, instead of building a JSON object
+ * per error.
+ */
+// @Provider indicates the class is an auto-discovered JAX-RS Provider
+@Provider
+public class ErrorMapper implements ExceptionMapper<Exception> {
+
+  /**
+   * Start of the error body, up to the code.
+   */
+  private static final ClassValue<String> BODY_START = new ClassValue<>() {
+    @Override
+    protected String computeValue(Class<?> type) {
+      return AccountJsonWriter.appendString(new StringBuilder("{\"exceptionType\":"), type.getName())
+          .append(",\"code\":")
+          .toString();
+    }
+  };
+
+  @Override
+  public Response toResponse(Exception exception) {
+    int code = 500;
+    if (exception instanceof WebApplicationException webAppException) {
+      code = webAppException.getResponse().getStatus();
+    }
+
+    StringBuilder body = new StringBuilder(128).append(BODY_START.get(exception.getClass())).append(code);
+
+    if (exception.getMessage() != null) {
+      AccountJsonWriter.appendString(body.append(",\"error\":"), exception.getMessage());
+    }
+
+    return Response.status(code).type(MediaType.APPLICATION_JSON).entity(body.append('}').toString()).build();
+  }
+}
@@ -0,0 +1,186 @@
+package quarkus.accounts;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.json.JsonValue;
+import javax.json.bind.Jsonb;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Replays the response of the first request to retries with the same {@code Idempotency-Key} header, so a retried
+ * deposit, withdrawal, create or close is not applied twice.
+ *
+ * <p>Applies to {@code PUT}, {@code POST} and {@code DELETE} requests with the header, of all resources. A replayed
+ * response has the {@code Idempotent-Replayed} header and doesn't reach the resource. Responses are kept by
+ * {@link IdempotencyStore}, server errors are not kept, so the retry is processed again.
+ *
+ * <p>The key must not be reused for another request: the method, path and body of the request are compared, a
+ * request not matching the first one is rejected with 422. Bodies of NDJSON requests are not compared, they are
+ * streamed and never held in memory as a whole. Bodies longer than {@code account-service.idempotency.max-body-bytes},
+ * e.g. batch uploads, are compared by their beginning and {@code Content-Length} only, so they are not buffered either.
+ */
+@Provider
+// Runs after AdmissionControl, so rejected requests don't take keys.
+@Priority(Priorities.AUTHENTICATION - 50)
+public class IdempotencyFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+  static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+  static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+  private static final int MAX_KEY_LENGTH = 255;
+
+  private static final Set<String> MUTATING_METHODS = Set.of(HttpMethod.PUT, HttpMethod.POST, HttpMethod.DELETE);
+
+  private static final MediaType NDJSON = MediaType.valueOf(NdjsonOutput.APPLICATION_NDJSON);
+
+  private static final String KEY_PROPERTY = IdempotencyFilter.class.getName() + ".key";
+
+  private static final String FINGERPRINT_PROPERTY = IdempotencyFilter.class.getName() + ".fingerprint";
+
+  @Context
+  ResourceInfo resourceInfo;
+
+  @Inject
+  IdempotencyStore idempotencyStore;
+
+  @Inject
+  Jsonb jsonb;
+
+  @Inject
+  MeterRegistry registry;
+
+  @ConfigProperty(name = "account-service.idempotency.enabled")
+  boolean enabled;
+
+  @ConfigProperty(name = "account-service.idempotency.max-body-bytes")
+  int maxBodyBytes;
+
+  @Override
+  public void filter(ContainerRequestContext request) throws IOException {
+    String key = request.getHeaderString(IDEMPOTENCY_KEY);
+
+    if (!enabled || key == null || !MUTATING_METHODS.contains(request.getMethod())) {
+      return;
+    }
+
+    if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+      throw new WebApplicationException(
+          IDEMPOTENCY_KEY + " must have 1 to " + MAX_KEY_LENGTH + " characters.", 400);
+    }
+
+    String fingerprint = fingerprint(request);
+    IdempotencyStore.Entry entry = idempotencyStore.begin(key, fingerprint);
+
+    if (entry == null) {
+      request.setProperty(KEY_PROPERTY, key);
+      request.setProperty(FINGERPRINT_PROPERTY, fingerprint);
+      return;
+    }
+
+    if (!entry.fingerprint.equals(fingerprint)) {
+      throw new WebApplicationException(IDEMPOTENCY_KEY + " " + key + " was already used for another request.", 422);
+    }
+
+    if (entry.isInProgress()) {
+      throw new WebApplicationException("Request with " + IDEMPOTENCY_KEY + " " + key + " is in progress.", 409);
+    }
+
+    registry.counter("account.idempotency.replayed", "endpoint", endpoint()).increment();
+    request.abortWith(Response.status(entry.status)
+        .header(IDEMPOTENT_REPLAYED, true)
+        .type(MediaType.APPLICATION_JSON)
+        .entity(entry.body)
+        .build());
+  }
+
+  @Override
+  public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+    if (!(request.getProperty(KEY_PROPERTY) instanceof String key)) {
+      return;
+    }
+
+    request.removeProperty(KEY_PROPERTY);
+    Object entity = response.getEntity();
+
+    if (response.getStatus() >= 500 || entity instanceof StreamingOutput) {
+      idempotencyStore.abandon(key);
+      return;
+    }
+
+    String body = toJson(entity);
+    idempotencyStore.complete(key, (String) request.getProperty(FINGERPRINT_PROPERTY), response.getStatus(), body);
+
+    if (body != null) {
+      // Serialized once, for the store and for the response.
+      response.setEntity(body);
+    }
+  }
+
+  /**
+   * Identify the request by method, path and body checksum.
+   */
+  private String fingerprint(ContainerRequestContext request) throws IOException {
+    String fingerprint = request.getMethod() + " " + request.getUriInfo().getPath();
+
+    if (!request.hasEntity() || NDJSON.isCompatible(request.getMediaType())) {
+      return fingerprint;
+    }
+
+    // Reads one byte more than the limit, to find out the body is longer.
+    InputStream entityStream = request.getEntityStream();
+    byte[] body = entityStream.readNBytes(maxBodyBytes + 1);
+    CRC32C checksum = new CRC32C();
+
+    if (body.length <= maxBodyBytes) {
+      request.setEntityStream(new ByteArrayInputStream(body));
+      checksum.update(body);
+      return fingerprint + " " + Long.toHexString(checksum.getValue());
+    }
+
+    // The rest of a long body is streamed to the resource, only the buffered beginning is compared.
+    request.setEntityStream(new SequenceInputStream(new ByteArrayInputStream(body), entityStream));
+    checksum.update(body, 0, maxBodyBytes);
+    return fingerprint + " " + Long.toHexString(checksum.getValue()) + " "
+        + request.getHeaderString(HttpHeaders.CONTENT_LENGTH);
+  }
+
+  private String toJson(Object entity) {
+    if (entity == null || entity instanceof String) {
+      return (String) entity;
+    }
+
+    if (entity instanceof JsonValue json) {
+      return json.toString();
+    }
+
+    return jsonb.toJson(entity);
+  }
+
+  private String endpoint() {
+    Method method = resourceInfo.getResourceMethod();
+    return method == null ? "unknown" : method.getDeclaringClass().getSimpleName() + "." + method.getName();
+  }
+}
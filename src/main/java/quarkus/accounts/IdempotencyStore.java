@@ -0,0 +1,321 @@
+package quarkus.accounts;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import java.util.Date;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import lombok.NonNull;
+import org.bson.Document;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Responses of requests with {@code Idempotency-Key}, so a retried request gets the response of the first one instead
+ * of being applied again.
+ *
+ * <p>Responses are held in memory for {@code account-service.idempotency.ttl-seconds}, at most
+ * {@code account-service.idempotency.max-entries} of them, the oldest are evicted first. When
+ * {@code account-service.idempotency.persist} is set, they are saved to the {@value #IDEMPOTENCY_TABLE} MongoDB
+ * collection too, so retries reaching another instance, or the same instance after a restart, are recognized.
+ * MongoDB removes them by TTL index.
+ *
+ * <p>The key is taken by the first request before it's processed, concurrent requests with the same key are told
+ * it's in progress. A key taken by an instance which crashed is taken over after
+ * {@code account-service.idempotency.in-progress-timeout-seconds}.
+ *
+ * <p>When MongoDB is not available, keys are held in memory only, so writes of the resources don't fail with MongoDB.
+ */
+@ApplicationScoped
+public class IdempotencyStore {
+
+  static final String IDEMPOTENCY_TABLE = "idempotency_key";
+
+  private static final Logger LOG = Logger.getLogger(IdempotencyStore.class);
+
+  private static final String ID = "_id";
+
+  private static final String FINGERPRINT = "fingerprint";
+
+  private static final String STATUS = "status";
+
+  private static final String BODY = "body";
+
+  private static final String CREATED_AT = "createdAt";
+
+  /**
+   * Status of a request which is not finished yet.
+   */
+  private static final int IN_PROGRESS = 0;
+
+  /**
+   * Resolved lazily, tests and deployments without persistence run without MongoDB.
+   */
+  @Inject
+  Instance<MongoClient> mongoClient;
+
+  @ConfigProperty(name = "account-service.mongodb.database-name")
+  String dbName;
+
+  @ConfigProperty(name = "account-service.idempotency.ttl-seconds")
+  long ttlSeconds;
+
+  @ConfigProperty(name = "account-service.idempotency.max-entries")
+  int maxEntries;
+
+  @ConfigProperty(name = "account-service.idempotency.in-progress-timeout-seconds")
+  long inProgressTimeoutSeconds;
+
+  @ConfigProperty(name = "account-service.idempotency.persist")
+  boolean persist;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Entries in the order they were stored, the oldest are evicted first. Responses expire in the same order, as they
+   * all have the same TTL.
+   */
+  private final Queue<Entry> evictionQueue = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Size of the eviction queue, {@link ConcurrentLinkedQueue#size()} traverses the whole queue.
+   */
+  private final AtomicInteger evictionQueueSize = new AtomicInteger();
+
+  private volatile MongoCollection<Document> collection;
+
+  /**
+   * Stored state of an idempotency key.
+   */
+  static final class Entry {
+
+    final String key;
+
+    final String fingerprint;
+
+    /**
+     * HTTP status of the response, {@link #IN_PROGRESS} while the request is processed.
+     */
+    final int status;
+
+    /**
+     * Response body serialized to JSON, {@code null} for responses without a body.
+     */
+    final String body;
+
+    final long createdNanos;
+
+    Entry(String key, String fingerprint, int status, String body, long createdNanos) {
+      this.key = key;
+      this.fingerprint = fingerprint;
+      this.status = status;
+      this.body = body;
+      this.createdNanos = createdNanos;
+    }
+
+    boolean isInProgress() {
+      return status == IN_PROGRESS;
+    }
+  }
+
+  /**
+   * Take the key for a request about to be processed.
+   *
+   * @param key         idempotency key sent by the client
+   * @param fingerprint identifies the request, the key must not be reused for another request
+   * @return {@code null} if the key was taken and the request must be processed, otherwise the response of the first
+   *     request with the key, or an entry {@link Entry#isInProgress() in progress}
+   */
+  public Entry begin(@NonNull String key, @NonNull String fingerprint) {
+    long now = System.nanoTime();
+    Entry taken = new Entry(key, fingerprint, IN_PROGRESS, null, now);
+    Entry existing = entries.putIfAbsent(key, taken);
+
+    if (existing != null && !isExpired(existing, now)) {
+      return existing;
+    }
+
+    if (existing != null && !entries.replace(key, existing, taken)) {
+      // Another request replaced the expired entry in the meantime, the client retries if it was removed since.
+      return entries.getOrDefault(key, taken);
+    }
+
+    add(taken);
+
+    if (!persist) {
+      return null;
+    }
+
+    Entry persisted;
+
+    try {
+      persisted = beginPersisted(key, fingerprint);
+    } catch (MongoException e) {
+      LOG.warnf("Idempotency key %s is held in memory only, MongoDB failed: %s", key, e.getMessage());
+      return null;
+    } catch (RuntimeException | Error e) {
+      // The request is not processed, a retry must not be told it's in progress.
+      entries.remove(key, taken);
+      throw e;
+    }
+
+    if (persisted == null) {
+      return null;
+    }
+
+    if (persisted.isInProgress()) {
+      entries.remove(key, taken);
+    } else if (entries.replace(key, taken, persisted)) {
+      add(persisted);
+    }
+
+    return persisted;
+  }
+
+  /**
+   * Save the response of a request which took the key by {@link #begin(String, String)}.
+   *
+   * @param status HTTP status of the response
+   * @param body   response body serialized to JSON, {@code null} for responses without a body
+   */
+  public void complete(@NonNull String key, @NonNull String fingerprint, int status, String body) {
+    Entry completed = new Entry(key, fingerprint, status, body, System.nanoTime());
+    entries.put(key, completed);
+    add(completed);
+
+    if (persist) {
+      try {
+        getCollection().updateOne(eq(ID, key), combine(set(STATUS, status), set(BODY, body)));
+      } catch (MongoException e) {
+        LOG.warnf("Response of idempotency key %s is held in memory only, MongoDB failed: %s", key, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Release the key of a request whose response must not be replayed, e.g. a server error, so a retry is processed.
+   */
+  public void abandon(@NonNull String key) {
+    Entry entry = entries.get(key);
+
+    if (entry != null && entry.isInProgress()) {
+      entries.remove(key, entry);
+    }
+
+    if (persist) {
+      try {
+        getCollection().deleteOne(and(eq(ID, key), eq(STATUS, IN_PROGRESS)));
+      } catch (MongoException e) {
+        // Released by the in-progress timeout then.
+        LOG.warnf("Idempotency key %s was not released in MongoDB: %s", key, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Create the TTL index, which removes keys from MongoDB after {@code account-service.idempotency.ttl-seconds}.
+   *
+   * <p>MongoDB refuses to change the TTL of an existing index, drop the index after changing the TTL.
+   */
+  public void createIndexes() {
+    if (persist) {
+      getCollection().createIndex(Indexes.ascending(CREATED_AT),
+          new IndexOptions().expireAfter(ttlSeconds, TimeUnit.SECONDS));
+    }
+  }
+
+  private Entry beginPersisted(String key, String fingerprint) {
+    Date now = new Date();
+
+    try {
+      getCollection().insertOne(new Document(ID, key)
+          .append(FINGERPRINT, fingerprint)
+          .append(STATUS, IN_PROGRESS)
+          .append(CREATED_AT, now));
+      return null;
+    } catch (MongoWriteException e) {
+      if (ErrorCategory.fromErrorCode(e.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+        throw e;
+      }
+    }
+
+    // Take over the key of the same request which didn't finish in time, its instance probably crashed. Another
+    // request with the key is not let in, it gets the stored fingerprint below and is rejected.
+    Date staleBefore = new Date(now.getTime() - TimeUnit.SECONDS.toMillis(inProgressTimeoutSeconds));
+    Document stale = getCollection().findOneAndUpdate(
+        and(eq(ID, key), eq(FINGERPRINT, fingerprint), eq(STATUS, IN_PROGRESS), lt(CREATED_AT, staleBefore)),
+        set(CREATED_AT, now));
+
+    if (stale != null) {
+      return null;
+    }
+
+    Document document = getCollection().find(eq(ID, key)).first();
+
+    if (document == null) {
+      // Removed by TTL or abandoned in the meantime, the client retries.
+      return new Entry(key, fingerprint, IN_PROGRESS, null, System.nanoTime());
+    }
+
+    return new Entry(key, document.getString(FINGERPRINT), document.getInteger(STATUS), document.getString(BODY),
+        System.nanoTime());
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    long timeoutSeconds = entry.isInProgress() ? inProgressTimeoutSeconds : ttlSeconds;
+    return now - entry.createdNanos > TimeUnit.SECONDS.toNanos(timeoutSeconds);
+  }
+
+  private void add(Entry entry) {
+    evictionQueue.add(entry);
+    int queued = evictionQueueSize.incrementAndGet();
+    long now = System.nanoTime();
+
+    // Replaced entries stay queued until they are the oldest, so the queue is allowed to be twice as long as the map.
+    while (queued > 2 * maxEntries || entries.size() > maxEntries || isOldestExpired(now)) {
+      Entry oldest = evictionQueue.poll();
+
+      if (oldest == null) {
+        return;
+      }
+
+      queued = evictionQueueSize.decrementAndGet();
+      // Keeps the key when its entry was replaced, the replacement is queued later.
+      entries.remove(oldest.key, oldest);
+    }
+  }
+
+  private boolean isOldestExpired(long now) {
+    Entry oldest = evictionQueue.peek();
+    return oldest != null && isExpired(oldest, now);
+  }
+
+  private MongoCollection<Document> getCollection() {
+    MongoCollection<Document> result = collection;
+
+    if (result == null) {
+      result = mongoClient.get().getDatabase(dbName).getCollection(IDEMPOTENCY_TABLE);
+      collection = result;
+    }
+
+    return result;
+  }
+}
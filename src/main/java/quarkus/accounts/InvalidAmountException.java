@@ -0,0 +1,36 @@
+package quarkus.accounts;
+
+import javax.ws.rs.WebApplicationException;
+
+/**
+ * Rejects invalid {@link Amount} with 400.
+ *
+ * <p>Invalid amounts are a client error, not worth a stack trace, so it's not captured.
+ */
+final class InvalidAmountException extends WebApplicationException {
+
+  private InvalidAmountException(String message) {
+    super(message, 400);
+  }
+
+  static InvalidAmountException malformed() {
+    return new InvalidAmountException("Amount must be a decimal number.");
+  }
+
+  static InvalidAmountException tooPrecise() {
+    return new InvalidAmountException("Amount must have at most " + Amount.SCALE + " decimal places.");
+  }
+
+  static InvalidAmountException notPositive() {
+    return new InvalidAmountException("Amount must be greater than zero.");
+  }
+
+  static InvalidAmountException tooLarge() {
+    return new InvalidAmountException("Amount must have at most " + Amount.MAX_INTEGER_DIGITS + " integer digits.");
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,217 @@
+package quarkus.accounts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only write-ahead journal of the in-memory ledger, written to a memory-mapped file.
+ *
+ * <p>The file is mapped by regions of fixed size. A record never spans two regions, the rest of a region too small
+ * for the next record is skipped. Zero record type marks the end of the journal, as the file is zero-filled when it
+ * grows.
+ *
+ * <p>Written records are in the OS page cache right away, so they survive a crash of the application. They survive
+ * a crash of the OS only when every write is forced to the disk.
+ *
+ * <p>Appends are not synchronized, every ledger segment has its own journal guarded by the segment's lock.
+ */
+final class LedgerJournal implements Closeable {
+
+  /**
+   * Replays journal records.
+   */
+  interface Handler {
+
+    void created(long accountNumber, long customerNumber, String customerName, long balanceCents,
+                 AccountStatus status);
+
+    void deposited(long accountNumber, long amountCents);
+
+    void withdrawn(long accountNumber, long amountCents);
+
+    void closed(long accountNumber);
+  }
+
+  private static final byte CREATED = 1;
+
+  private static final byte DEPOSITED = 2;
+
+  private static final byte WITHDRAWN = 3;
+
+  private static final byte CLOSED = 4;
+
+  private static final byte REGION_END = -1;
+
+  // Record type and account number.
+  private static final int HEADER_SIZE = Byte.BYTES + Long.BYTES;
+
+  private final FileChannel channel;
+
+  private final int regionSize;
+
+  private final boolean force;
+
+  private MappedByteBuffer region;
+
+  private long regionStart;
+
+  private LedgerJournal(FileChannel channel, int regionSize, boolean force) {
+    this.channel = channel;
+    this.regionSize = regionSize;
+    this.force = force;
+  }
+
+  /**
+   * Open the journal, replay all its records and prepare it for appending new records.
+   *
+   * @param file       journal file, created if it doesn't exist
+   * @param regionSize size of one memory-mapped region of the file in bytes
+   * @param force      whether every write is forced to the disk
+   * @param handler    called for every record of the journal
+   */
+  static LedgerJournal open(Path file, int regionSize, boolean force, Handler handler) throws IOException {
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+
+    FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+    LedgerJournal journal = new LedgerJournal(channel, regionSize, force);
+    journal.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionSize);
+    journal.replay(handler);
+    return journal;
+  }
+
+  void appendCreated(long accountNumber, long customerNumber, String customerName, long balanceCents,
+                     AccountStatus status) {
+    byte[] name = customerName.getBytes(StandardCharsets.UTF_8);
+    int start = reserve(HEADER_SIZE + Long.BYTES + Long.BYTES + Byte.BYTES + Integer.BYTES + name.length);
+
+    region.putLong(accountNumber)
+        .putLong(customerNumber)
+        .putLong(balanceCents)
+        .put((byte) status.ordinal())
+        .putInt(name.length)
+        .put(name);
+
+    commit(start, CREATED);
+  }
+
+  void appendDeposited(long accountNumber, long amountCents) {
+    appendAmount(DEPOSITED, accountNumber, amountCents);
+  }
+
+  void appendWithdrawn(long accountNumber, long amountCents) {
+    appendAmount(WITHDRAWN, accountNumber, amountCents);
+  }
+
+  void appendClosed(long accountNumber) {
+    int start = reserve(HEADER_SIZE);
+    region.putLong(accountNumber);
+    commit(start, CLOSED);
+  }
+
+  @Override
+  public void close() throws IOException {
+    region.force();
+    channel.close();
+  }
+
+  private void appendAmount(byte type, long accountNumber, long amountCents) {
+    int start = reserve(HEADER_SIZE + Long.BYTES);
+    region.putLong(accountNumber).putLong(amountCents);
+    commit(start, type);
+  }
+
+  /**
+   * Make room for a record in the current region and position the region after the record type.
+   *
+   * @return position of the record type
+   */
+  private int reserve(int recordSize) {
+    if (recordSize > regionSize) {
+      throw new IllegalArgumentException(
+          "Journal record of " + recordSize + " bytes doesn't fit into journal region of " + regionSize + " bytes.");
+    }
+
+    if (region.remaining() < recordSize) {
+      if (region.hasRemaining()) {
+        region.put(REGION_END);
+      }
+      nextRegion();
+    }
+
+    int start = region.position();
+    region.position(start + Byte.BYTES);
+    return start;
+  }
+
+  private void commit(int start, byte type) {
+    // Record type is written last, so a record cut off by a crash of the application is not replayed.
+    region.put(start, type);
+
+    if (force) {
+      region.force();
+    }
+  }
+
+  private void nextRegion() {
+    regionStart += regionSize;
+
+    try {
+      // Mapping a region beyond the end of the file grows the file.
+      region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionSize);
+    } catch (IOException e) {
+      throw new IllegalStateException("Journal region at " + regionStart + " can't be mapped.", e);
+    }
+  }
+
+  private void replay(Handler handler) {
+    while (true) {
+      if (!region.hasRemaining()) {
+        nextRegion();
+        continue;
+      }
+
+      int start = region.position();
+      byte type = region.get(start);
+
+      if (type == 0) {
+        // End of the journal, new records are appended here.
+        return;
+      }
+
+      if (type == REGION_END) {
+        nextRegion();
+        continue;
+      }
+
+      region.position(start + Byte.BYTES);
+      long accountNumber = region.getLong();
+
+      switch (type) {
+        case CREATED -> {
+          long customerNumber = region.getLong();
+          long balanceCents = region.getLong();
+          AccountStatus status = AccountStatus.values()[region.get()];
+          byte[] name = new byte[region.getInt()];
+          region.get(name);
+          handler.created(accountNumber, customerNumber, new String(name, StandardCharsets.UTF_8), balanceCents,
+              status);
+        }
+        case DEPOSITED -> handler.deposited(accountNumber, region.getLong());
+        case WITHDRAWN -> handler.withdrawn(accountNumber, region.getLong());
+        case CLOSED -> handler.closed(accountNumber);
+        default -> throw new IllegalStateException(
+            "Journal is corrupted, unknown record type " + type + " at " + (regionStart + start) + ".");
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package quarkus.accounts;
+
+import java.util.function.Consumer;
+
+/**
+ * Hash map with primitive {@code long} keys, using open addressing with linear probing.
+ *
+ * <p>Unlike {@code HashMap<Long, V>} it doesn't box keys nor allocate an entry per mapping. Mappings can't be
+ * removed. Not thread safe.
+ *
+ * @param <V> value type
+ */
+final class LongObjectMap<V> {
+
+  private long[] keys;
+
+  private Object[] values;
+
+  private int size;
+
+  /**
+   * Create map.
+   *
+   * @param expectedSize number of mappings the map holds without resizing
+   */
+  LongObjectMap(int expectedSize) {
+    int capacity = 2;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+
+    keys = new long[capacity];
+    values = new Object[capacity];
+  }
+
+  /**
+   * Returns value mapped to the key, {@code null} if there is no mapping.
+   */
+  @SuppressWarnings("unchecked")
+  V get(long key) {
+    int mask = keys.length - 1;
+
+    for (int i = index(key, mask); values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return (V) values[i];
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Map the value to the key, if the key is not mapped yet.
+   *
+   * @return value already mapped to the key, {@code null} if the given value was mapped
+   */
+  V putIfAbsent(long key, V value) {
+    V existing = get(key);
+    if (existing != null) {
+      return existing;
+    }
+
+    // Load factor is kept at most 0.5, so probe sequences stay short.
+    if ((size + 1) * 2 > keys.length) {
+      resize();
+    }
+
+    insert(key, value);
+    size++;
+    return null;
+  }
+
+  int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  void forEachValue(Consumer<V> consumer) {
+    for (Object value : values) {
+      if (value != null) {
+        consumer.accept((V) value);
+      }
+    }
+  }
+
+  private void insert(long key, Object value) {
+    int mask = keys.length - 1;
+    int i = index(key, mask);
+
+    while (values[i] != null) {
+      i = (i + 1) & mask;
+    }
+
+    keys[i] = key;
+    values[i] = value;
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+
+    keys = new long[oldKeys.length * 2];
+    values = new Object[oldValues.length * 2];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != null) {
+        insert(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  private static int index(long key, int mask) {
+    // Spread the bits, sequential keys would form long clusters otherwise.
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
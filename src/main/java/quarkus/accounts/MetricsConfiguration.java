@@ -0,0 +1,40 @@
+package quarkus.accounts;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import javax.enterprise.inject.Produces;
+import javax.inject.Singleton;
+
+/**
+ * Micrometer configuration of the account service metrics.
+ */
+public class MetricsConfiguration {
+
+  /**
+   * Publish percentile histograms of request, db and serialization timers, so that latency percentiles can be
+   * aggregated across instances in Prometheus.
+   */
+  @Produces
+  @Singleton
+  public MeterFilter enableLatencyHistograms() {
+    return new MeterFilter() {
+      @Override
+      public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+        if (id.getType() == Meter.Type.TIMER && isLatencyTimer(id.getName())) {
+          return DistributionStatisticConfig.builder()
+              .percentilesHistogram(true)
+              .build()
+              .merge(config);
+        }
+        return config;
+      }
+    };
+  }
+
+  private static boolean isLatencyTimer(String name) {
+    return name.startsWith("http.server.requests")
+        || name.startsWith("account.")
+        || name.startsWith("mongodb.command");
+  }
+}
@@ -0,0 +1,51 @@
+package quarkus.accounts;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Records duration of every MongoDB command as {@code mongodb.command} timer, tagged by command name and outcome.
+ *
+ * <p>Registered to MongoDB clients automatically as CDI bean. Duration is measured by the driver itself,
+ * timers are looked up from a map, so the overhead per command is negligible.
+ */
+@ApplicationScoped
+public class MongoCommandMetrics implements CommandListener {
+
+  @Inject
+  MeterRegistry registry;
+
+  private final Map<String, Timer> succeededTimers = new ConcurrentHashMap<>();
+
+  private final Map<String, Timer> failedTimers = new ConcurrentHashMap<>();
+
+  @Override
+  public void commandSucceeded(CommandSucceededEvent event) {
+    succeededTimers
+        .computeIfAbsent(event.getCommandName(), command -> timer(command, "success"))
+        .record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void commandFailed(CommandFailedEvent event) {
+    failedTimers
+        .computeIfAbsent(event.getCommandName(), command -> timer(command, "failure"))
+        .record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+  }
+
+  private Timer timer(String command, String outcome) {
+    return Timer.builder("mongodb.command")
+        .description("MongoDB command duration")
+        .tag("command", command)
+        .tag("outcome", outcome)
+        .register(registry);
+  }
+}
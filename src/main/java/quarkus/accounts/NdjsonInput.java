@@ -0,0 +1,73 @@
+package quarkus.accounts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbException;
+
+/**
+ * Reads items from the HTTP request body in newline delimited JSON (NDJSON), one item per line.
+ */
+final class NdjsonInput {
+
+  private NdjsonInput() {
+  }
+
+  /**
+   * Create iterator lazily reading items from the given input, so the whole body is never held in memory.
+   *
+   * <p>Blank lines are skipped. A malformed line is returned as {@code null} item, so that the caller can report
+   * it and continue with the following items.
+   *
+   * @param jsonb deserializer of the items
+   * @param input request body
+   * @param type  item type
+   * @param <T>   item type
+   */
+  static <T> Iterator<T> read(Jsonb jsonb, InputStream input, Class<T> type) {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+    return new Iterator<>() {
+      private String nextLine = readNonBlankLine(reader);
+
+      @Override
+      public boolean hasNext() {
+        return nextLine != null;
+      }
+
+      @Override
+      public T next() {
+        if (nextLine == null) {
+          throw new NoSuchElementException();
+        }
+
+        String line = nextLine;
+        nextLine = readNonBlankLine(reader);
+
+        try {
+          return jsonb.fromJson(line, type);
+        } catch (JsonbException e) {
+          return null;
+        }
+      }
+    };
+  }
+
+  private static String readNonBlankLine(BufferedReader reader) {
+    try {
+      String line = reader.readLine();
+      while (line != null && line.isBlank()) {
+        line = reader.readLine();
+      }
+      return line;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package quarkus.accounts;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import javax.json.bind.Jsonb;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes items to the HTTP response as newline delimited JSON (NDJSON), one item per line.
+ */
+final class NdjsonOutput {
+
+  /**
+   * Newline delimited JSON media type.
+   */
+  static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+  private NdjsonOutput() {
+  }
+
+  /**
+   * Create streaming response body from the given source of items.
+   *
+   * <p>Every item is serialized and written as soon as the source passes it, so the response is sent incrementally
+   * and memory usage doesn't depend on the number of items.
+   *
+   * @param jsonb  serializer of the items
+   * @param source passes all items, one by one, to the given consumer
+   * @param <T>    item type
+   */
+  static <T> StreamingOutput of(Jsonb jsonb, Consumer<Consumer<T>> source) {
+    return output -> {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+
+      try {
+        source.accept(item -> writeLine(writer, jsonb.toJson(item)));
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+
+      writer.flush();
+    };
+  }
+
+  private static void writeLine(Writer writer, String line) {
+    try {
+      writer.write(line);
+      writer.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
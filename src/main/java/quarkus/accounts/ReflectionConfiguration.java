@@ -0,0 +1,26 @@
+package quarkus.accounts;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * Registers classes read and written by JSON-B for reflection in the native executable.
+ *
+ * <p>Quarkus registers JPA entities and the direct parameter and return types of resource methods. Types used only
+ * as generic arguments (e.g. {@code List<BatchItemResult>}), written by {@link NdjsonOutput} or read by
+ * {@link NdjsonInput}, are not discovered and would fail to serialize at runtime. {@link AccountNoSql} is written to
+ * MongoDB by {@link AccountNoSqlCodec}, which doesn't need reflection.
+ */
+@RegisterForReflection(targets = {
+    AccountJpa.class,
+    AccountNoSql.class,
+    AccountNoSqlPanache.class,
+    AccountLedger.class,
+    AccountPage.class,
+    AccountBalance.class,
+    AccountTransaction.class,
+    BatchItemResult.class,
+    CustomerSummary.class,
+    AccountFilter.class
+})
+public class ReflectionConfiguration {
+}
@@ -0,0 +1,34 @@
+package quarkus.accounts;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import javax.inject.Inject;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Records time spent by serialization of response bodies as {@code account.serialization} timer, tagged by
+ * the serialized type.
+ *
+ * <p>Together with {@code account.db} timers of the repositories, it splits the request time reported by
+ * {@code http.server.requests} into db and serialization time.
+ */
+@Provider
+public class SerializationMetrics implements WriterInterceptor {
+
+  @Inject
+  MeterRegistry registry;
+
+  @Override
+  public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+    Timer.Sample sample = Timer.start(registry);
+
+    try {
+      context.proceed();
+    } finally {
+      sample.stop(registry.timer("account.serialization", "type", context.getType().getSimpleName()));
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package quarkus.accounts;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Getter;
+
+/**
+ * Movements of bulk transaction posting grouped per account.
+ *
+ * <p>All deposits of one account are summed into one balance change, the same for withdrawals. So the db is
+ * updated at most twice per account, however many movements the account has.
+ *
+ * <p>Outcomes of the movements are decided up front from the account statuses read before the update.
+ * Withdrawal updates still check the overdrawn status themselves, so a concurrent status change can't be bypassed.
+ */
+@Getter
+final class TransactionBatch {
+
+  private final List<BatchItemResult> results;
+
+  /**
+   * Sum of applied deposits per account number.
+   */
+  private final Map<Long, BigDecimal> deposits = new HashMap<>();
+
+  /**
+   * Sum of applied withdrawals per account number.
+   */
+  private final Map<Long, BigDecimal> withdrawals = new HashMap<>();
+
+  /**
+   * Applied movements in request order.
+   */
+  private final List<AccountTransaction> movements = new ArrayList<>();
+
+  private TransactionBatch(int size) {
+    results = new ArrayList<>(size);
+  }
+
+  /**
+   * Account numbers of all valid movements.
+   */
+  static Set<Long> accountNumbers(List<AccountTransaction> transactions) {
+    return transactions.stream()
+        .filter(Objects::nonNull)
+        .map(AccountTransaction::getAccountNumber)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Decide outcome of every movement and group applied movements per account.
+   *
+   * @param transactions movements in request order
+   * @param firstIndex   position of the first movement in the whole request
+   * @param statuses     statuses of existing accounts by account number
+   */
+  static TransactionBatch plan(List<AccountTransaction> transactions, int firstIndex,
+                               Function<Long, AccountStatus> statuses) {
+    TransactionBatch batch = new TransactionBatch(transactions.size());
+
+    for (int i = 0; i < transactions.size(); i++) {
+      AccountTransaction transaction = transactions.get(i);
+      int index = firstIndex + i;
+
+      if (transaction == null || transaction.getAccountNumber() == null || transaction.getType() == null
+          || transaction.getAmount() == null || transaction.getAmount().signum() <= 0) {
+        batch.results.add(BatchItemResult.failure(index,
+            transaction == null ? null : transaction.getAccountNumber(), 400,
+            "Transaction must have account number, type and positive amount."));
+        continue;
+      }
+
+      Long accountNumber = transaction.getAccountNumber();
+      AccountStatus status = statuses.apply(accountNumber);
+
+      if (status == null) {
+        batch.results.add(BatchItemResult.failure(index, accountNumber, 404,
+            "Account with " + accountNumber + " does not exist."));
+      } else if (transaction.getType() == TransactionType.WITHDRAWAL && status == AccountStatus.OVERDRAWN) {
+        batch.results.add(BatchItemResult.failure(index, accountNumber, 409,
+            "Account is overdrawn, no further withdrawals permitted"));
+      } else {
+        Map<Long, BigDecimal> sums = transaction.getType() == TransactionType.DEPOSIT
+            ? batch.deposits
+            : batch.withdrawals;
+        sums.merge(accountNumber, transaction.getAmount(), BigDecimal::add);
+        batch.movements.add(transaction);
+        batch.results.add(BatchItemResult.success(index, accountNumber, 200));
+      }
+    }
+
+    return batch;
+  }
+
+  /**
+   * Mark all applied movements as failed, when the db update failed.
+   */
+  void failApplied(String error) {
+    results.stream().filter(result -> result.getStatus() == 200).forEach(result -> result.fail(500, error));
+  }
+}
@@ -0,0 +1,6 @@
+package quarkus.accounts;
+
+public enum TransactionType {
+  DEPOSIT,
+  WITHDRAWAL
+}
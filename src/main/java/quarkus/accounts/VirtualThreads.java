@@ -0,0 +1,126 @@
+package quarkus.accounts;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ThreadContext;
+import org.jboss.logging.Logger;
+
+/**
+ * Runs blocking endpoints listed by {@code account-service.virtual-threads.endpoints} on virtual threads, so a request
+ * waiting for the db doesn't hold a worker thread and concurrency isn't capped by the worker pool.
+ *
+ * <p>Virtual threads need JDK 21 at runtime. The project is built for JDK 17, so they are looked up when the
+ * application starts. Without them, or for endpoints which are not listed, the endpoint runs on the worker thread as
+ * before.
+ *
+ * <p>While virtual threads are used, carrier threads pinned by {@code synchronized} blocks, e.g. of the JDBC and
+ * MongoDB drivers, for longer than {@code account-service.virtual-threads.pinned-threshold} are counted by
+ * {@code account.virtual_threads.pinned}, tagged by the frame holding the monitor.
+ */
+@ApplicationScoped
+public class VirtualThreads {
+
+  private static final Logger LOG = Logger.getLogger(VirtualThreads.class);
+
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  @Inject
+  ThreadContext threadContext;
+
+  @Inject
+  MeterRegistry registry;
+
+  @ConfigProperty(name = "account-service.virtual-threads.endpoints")
+  Optional<Set<String>> endpoints;
+
+  @ConfigProperty(name = "account-service.virtual-threads.pinned-threshold")
+  Duration pinnedThreshold;
+
+  private ExecutorService executor;
+
+  private RecordingStream pinning;
+
+  @PostConstruct
+  void init() {
+    if (endpoints.isEmpty()) {
+      return;
+    }
+
+    try {
+      executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      LOG.warnf("Virtual threads need JDK 21, endpoints %s run on worker threads.", endpoints.get());
+      return;
+    }
+
+    pinning = new RecordingStream();
+    pinning.enable(PINNED_EVENT).withThreshold(pinnedThreshold).withStackTrace();
+    pinning.onEvent(PINNED_EVENT, this::countPinned);
+    pinning.startAsync();
+
+    LOG.infof("Endpoints %s run on virtual threads.", endpoints.get());
+  }
+
+  @PreDestroy
+  void close() {
+    if (executor != null) {
+      pinning.close();
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Run the endpoint body on a virtual thread if the endpoint is listed, on the calling worker thread otherwise.
+   *
+   * <p>The request context is propagated, so the body can use request scoped beans as on the worker thread.
+   *
+   * @param endpoint endpoint name, resource class simple name and method name, e.g.
+   *                 {@code AccountJpaResource.getAccount}
+   * @param body     blocking body of the endpoint
+   * @return result of the body, emitted on the thread which ran it
+   */
+  public <T> Uni<T> run(String endpoint, Supplier<T> body) {
+    Uni<T> result = Uni.createFrom().item(threadContext.contextualSupplier(body));
+
+    return executor != null && endpoints.get().contains(endpoint)
+        ? result.runSubscriptionOn(executor)
+        : result;
+  }
+
+  private void countPinned(RecordedEvent event) {
+    registry.counter("account.virtual_threads.pinned", "frame", pinningFrame(event)).increment();
+  }
+
+  /**
+   * First frame of the pinned thread outside of the JDK, the one which holds the monitor or waits in it.
+   */
+  private static String pinningFrame(RecordedEvent event) {
+    if (event.getStackTrace() == null) {
+      return "unknown";
+    }
+
+    List<RecordedFrame> frames = event.getStackTrace().getFrames();
+
+    return frames.stream()
+        .filter(RecordedFrame::isJavaFrame)
+        .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName())
+        .filter(frame -> !frame.startsWith("java.") && !frame.startsWith("jdk.") && !frame.startsWith("sun."))
+        .findFirst()
+        .orElse("unknown");
+  }
+}
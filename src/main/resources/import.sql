@@ -1,23 +1,23 @@
-INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber)
-VALUES (nextval('hibernate_sequence'), 123456789, 0, 550.78, 'Debbie Hall', 12345);
+INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber, version)
+VALUES (nextval('hibernate_sequence'), 123456789, 0, 550.78, 'Debbie Hall', 12345, 0);
 
-INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber)
-VALUES (nextval('hibernate_sequence'), 111222333, 0, 2389.32, 'David Tennant', 112211);
+INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber, version)
+VALUES (nextval('hibernate_sequence'), 111222333, 0, 2389.32, 'David Tennant', 112211, 0);
 
-INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber)
-VALUES (nextval('hibernate_sequence'), 444666, 0, 3499.12, 'Billie Piper', 332233);
+INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber, version)
+VALUES (nextval('hibernate_sequence'), 444666, 0, 3499.12, 'Billie Piper', 332233, 0);
 
-INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber)
-VALUES (nextval('hibernate_sequence'), 87878787, 0, 890.54, 'Matt Smith', 444434);
+INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber, version)
+VALUES (nextval('hibernate_sequence'), 87878787, 0, 890.54, 'Matt Smith', 444434, 0);
 
-INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber)
-VALUES (nextval('hibernate_sequence'), 990880221, 0, 1298.34, 'Alex Kingston', 778877);
+INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber, version)
+VALUES (nextval('hibernate_sequence'), 990880221, 0, 1298.34, 'Alex Kingston', 778877, 0);
 
-INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber)
-VALUES (nextval('hibernate_sequence'), 987654321, 0, 781.82, 'Tom Baker', 908990);
+INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber, version)
+VALUES (nextval('hibernate_sequence'), 987654321, 0, 781.82, 'Tom Baker', 908990, 0);
 
-INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber)
-VALUES (nextval('hibernate_sequence'), 5465, 0, 239.33, 'Alex Trebek', 776868);
+INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber, version)
+VALUES (nextval('hibernate_sequence'), 5465, 0, 239.33, 'Alex Trebek', 776868, 0);
 
-INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber)
-VALUES (nextval('hibernate_sequence'), 78790, 0, 439.01, 'Vanna White', 444222);
+INSERT INTO account(id, accountNumber, accountStatus, balance, customerName, customerNumber, version)
+VALUES (nextval('hibernate_sequence'), 78790, 0, 439.01, 'Vanna White', 444222, 0);
@@ -0,0 +1,11 @@
+package quarkus.accounts;
+
+import io.quarkus.test.junit.QuarkusIntegrationTest;
+
+/**
+ * Runs {@link AccountJpaResourceTest} against the packaged application, the native executable when built with
+ * {@code -Pnative}.
+ */
+@QuarkusIntegrationTest
+class AccountJpaResourceIT extends AccountJpaResourceTest {
+}
@@ -3,8 +3,10 @@ package quarkus.accounts;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.hamcrest.collection.IsEmptyCollection.empty;
@@ -12,10 +14,17 @@ import static org.hamcrest.collection.IsEmptyCollection.empty;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.h2.H2DatabaseTestResource;
 import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.config.JsonConfig;
+import io.restassured.config.RestAssuredConfig;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.config.JsonPathConfig.NumberReturnType;
 import io.restassured.response.Response;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
@@ -28,6 +37,9 @@ import org.junit.jupiter.api.TestMethodOrder;
 @TestMethodOrder(OrderAnnotation.class)
 class AccountJpaResourceTest {
 
+  private static final RestAssuredConfig BIG_DECIMAL_CONFIG = RestAssuredConfig.config()
+      .jsonConfig(JsonConfig.jsonConfig().numberReturnType(NumberReturnType.BIG_DECIMAL));
+
   @Test
   @Order(1)
   void testRetrieveAll() {
@@ -93,8 +105,9 @@ class AccountJpaResourceTest {
 
     assertThat(returnedAccount, notNullValue());
 
-    // Set id returned from database in order to test Account equivalency.
+    // Set id and version returned from database in order to test Account equivalency.
     newAccount.setId(returnedAccount.getId());
+    newAccount.setVersion(returnedAccount.getVersion());
     assertThat(returnedAccount, equalTo(newAccount));
 
     Response response = given()
@@ -226,6 +239,293 @@ class AccountJpaResourceTest {
     assertThat(account.getBalance(), equalTo(beforeWithdraw.getBalance().subtract(withdrawal)));
   }
 
+  @Test
+  void testAccountsPage() {
+    Response firstPage = given()
+        .queryParam("size", 3)
+        .when().get("/accounts/page")
+        .then()
+        .statusCode(200)
+        .extract()
+        .response();
+
+    List<Integer> firstPageIds = firstPage.jsonPath().getList("accounts.id");
+    String nextCursor = firstPage.jsonPath().getString("nextCursor");
+
+    assertThat(firstPageIds, hasSize(3));
+    assertThat(nextCursor, equalTo(String.valueOf(firstPageIds.get(2))));
+
+    List<Integer> secondPageIds = given()
+        .queryParam("size", 3)
+        .queryParam("after", nextCursor)
+        .when().get("/accounts/page")
+        .then()
+        .statusCode(200)
+        .extract()
+        .jsonPath().getList("accounts.id");
+
+    assertThat(secondPageIds, hasSize(3));
+    assertThat(secondPageIds.get(0) > firstPageIds.get(2), equalTo(true));
+  }
+
+  @Test
+  void testFilteredAccountsPage() {
+    List<Integer> accountNumbers = given()
+        .queryParam("minBalance", "3000")
+        .when().get("/accounts/page")
+        .then()
+        .statusCode(200)
+        .extract()
+        .jsonPath().getList("accounts.accountNumber");
+
+    assertThat(accountNumbers, equalTo(List.of(444666)));
+  }
+
+  @Test
+  void testCustomerSummaries() {
+    given()
+        .config(BIG_DECIMAL_CONFIG)
+        .queryParam("customerNumber", 332233)
+        .when().get("/accounts/customers")
+        .then()
+        .statusCode(200)
+        .body("customerNumber", equalTo(List.of(332233)))
+        .body("accountCount", equalTo(List.of(1)))
+        .body("totalBalance", equalTo(List.of(new BigDecimal("3499.12"))));
+  }
+
+  @Test
+  void testAccountsPageFailure() {
+    given()
+        .queryParam("size", 0)
+        .when().get("/accounts/page")
+        .then()
+        .statusCode(400);
+  }
+
+  @Test
+  void testCreateAccounts() {
+    AccountJpa first = new AccountJpa();
+    first.setAccountNumber(5551001L);
+    first.setCustomerNumber(555100L);
+    first.setCustomerName("Peter Capaldi");
+    first.setBalance(new BigDecimal("10.00"));
+
+    AccountJpa second = new AccountJpa();
+    second.setAccountNumber(5551002L);
+    second.setCustomerNumber(555100L);
+    second.setCustomerName("Peter Capaldi");
+    second.setBalance(new BigDecimal("20.00"));
+
+    // Account number of an existing account.
+    AccountJpa duplicate = new AccountJpa();
+    duplicate.setAccountNumber(444666L);
+    duplicate.setCustomerNumber(332233L);
+    duplicate.setCustomerName("Billie Piper");
+    duplicate.setBalance(new BigDecimal("1.00"));
+
+    List<Integer> statuses = given()
+        .contentType(ContentType.JSON)
+        .body(List.of(first, second, duplicate))
+        .when().post("/accounts/batch")
+        .then()
+        .statusCode(200)
+        .extract()
+        .jsonPath().getList("status");
+
+    assertThat(statuses, equalTo(List.of(201, 201, 409)));
+
+    AccountJpa account = given()
+        .when().get("/accounts/{accountNumber}", 5551002)
+        .then()
+        .statusCode(200)
+        .extract().as(AccountJpa.class);
+
+    assertThat(account.getCustomerName(), equalTo("Peter Capaldi"));
+    assertThat(account.getBalance(), equalTo(new BigDecimal("20.00")));
+  }
+
+  @Test
+  void testPostTransactions() {
+    List<AccountTransaction> transactions = List.of(
+        new AccountTransaction(111222333L, TransactionType.DEPOSIT, new BigDecimal("100.00")),
+        new AccountTransaction(11L, TransactionType.DEPOSIT, new BigDecimal("5.00")),
+        new AccountTransaction(111222333L, TransactionType.WITHDRAWAL, new BigDecimal("39.32")),
+        new AccountTransaction(111222333L, TransactionType.DEPOSIT, new BigDecimal("-1.00")));
+
+    List<Integer> statuses = given()
+        .contentType(ContentType.JSON)
+        .body(transactions)
+        .when().post("/accounts/transactions/batch")
+        .then()
+        .statusCode(200)
+        .extract()
+        .jsonPath().getList("status");
+
+    assertThat(statuses, equalTo(List.of(200, 404, 200, 400)));
+
+    AccountJpa account = given()
+        .when().get("/accounts/{accountNumber}", 111222333)
+        .then()
+        .statusCode(200)
+        .extract().as(AccountJpa.class);
+
+    assertThat(account.getBalance(), equalTo(new BigDecimal("2450.00")));
+  }
+
+  @Test
+  void testBalanceAt() {
+    Instant beforeDeposit = Instant.now();
+
+    given()
+        .contentType(ContentType.JSON)
+        .body("100.00")
+        .when().put("/accounts/{accountNumber}/deposit", 87878787)
+        .then()
+        .statusCode(200);
+
+    given()
+        .config(BIG_DECIMAL_CONFIG)
+        .queryParam("at", beforeDeposit.toString())
+        .when().get("/accounts/{accountNumber}/balance", 87878787)
+        .then()
+        .statusCode(200)
+        .body("balance", equalTo(new BigDecimal("890.54")));
+
+    given()
+        .config(BIG_DECIMAL_CONFIG)
+        .queryParam("at", Instant.now().toString())
+        .when().get("/accounts/{accountNumber}/balance", 87878787)
+        .then()
+        .statusCode(200)
+        .body("balance", equalTo(new BigDecimal("990.54")));
+  }
+
+  @Test
+  void testBalanceAtFailure() {
+    given()
+        .queryParam("at", "yesterday")
+        .when().get("/accounts/{accountNumber}/balance", 87878787)
+        .then()
+        .statusCode(400);
+  }
+
+  @Test
+  void testIdempotentDeposit() {
+    for (int attempt = 0; attempt < 2; attempt++) {
+      given()
+          .config(BIG_DECIMAL_CONFIG)
+          .contentType(ContentType.JSON)
+          .header(IdempotencyFilter.IDEMPOTENCY_KEY, "deposit-987654321")
+          .body("18.18")
+          .when().put("/accounts/{accountNumber}/deposit", 987654321)
+          .then()
+          .statusCode(200)
+          .header(IdempotencyFilter.IDEMPOTENT_REPLAYED, attempt == 0 ? nullValue() : equalTo("true"))
+          .body("balance", equalTo(new BigDecimal("800.00")));
+    }
+
+    // Same key for another amount.
+    given()
+        .contentType(ContentType.JSON)
+        .header(IdempotencyFilter.IDEMPOTENCY_KEY, "deposit-987654321")
+        .body("20.00")
+        .when().put("/accounts/{accountNumber}/deposit", 987654321)
+        .then()
+        .statusCode(422);
+
+    AccountJpa account = given()
+        .when().get("/accounts/{accountNumber}", 987654321)
+        .then()
+        .statusCode(200)
+        .extract().as(AccountJpa.class);
+
+    assertThat(account.getBalance(), equalTo(new BigDecimal("800.00")));
+  }
+
+  @Test
+  void testDepositFailure() {
+    for (String amount : new String[] {"abc", "1e2", "12."}) {
+      given()
+          .contentType(ContentType.JSON)
+          .body(amount)
+          .when().put("/accounts/{accountNumber}/deposit", 990880221)
+          .then()
+          .statusCode(400)
+          .body("error", equalTo("Amount must be a decimal number."));
+    }
+
+    given()
+        .contentType(ContentType.JSON)
+        .body("1.234")
+        .when().put("/accounts/{accountNumber}/deposit", 990880221)
+        .then()
+        .statusCode(400)
+        .body("error", equalTo("Amount must have at most 2 decimal places."));
+
+    for (String amount : new String[] {"-5.00", "0.00"}) {
+      given()
+          .contentType(ContentType.JSON)
+          .body(amount)
+          .when().put("/accounts/{accountNumber}/withdrawal", 990880221)
+          .then()
+          .statusCode(400)
+          .body("error", equalTo("Amount must be greater than zero."));
+    }
+  }
+
+  @Test
+  void testAccountJson() {
+    Response response = given()
+        .when().get("/accounts/{accountNumber}", 990880221)
+        .then()
+        .statusCode(200)
+        .extract().response();
+
+    // Accounts are written by AccountJsonWriter, the JSON must be the same as of JSON-B.
+    try (Jsonb jsonb = JsonbBuilder.create()) {
+      assertThat(response.asString(), equalTo(jsonb.toJson(response.as(AccountJpa.class))));
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+
+    given()
+        .when().get("/accounts/{accountNumber}", 11)
+        .then()
+        .statusCode(404)
+        .contentType(ContentType.JSON)
+        .body("exceptionType", equalTo("javax.ws.rs.WebApplicationException"))
+        .body("code", equalTo(404))
+        .body("error", equalTo("Account with 11 does not exist."));
+  }
+
+  @Test
+  void testResponseFormats() {
+    byte[] cbor = given()
+        .accept(AccountCborWriter.APPLICATION_CBOR)
+        .when().get("/accounts/{accountNumber}", 444666)
+        .then()
+        .statusCode(200)
+        .contentType(AccountCborWriter.APPLICATION_CBOR)
+        .extract().asByteArray();
+
+    // One char per byte.
+    String bytes = new String(cbor, StandardCharsets.ISO_8859_1);
+
+    // Map of indefinite length, account number as 4 bytes unsigned integer 0x0006c8fa.
+    assertThat(bytes.charAt(0), equalTo('\u00bf'));
+    assertThat(bytes, containsString("accountNumber\u001a\u0000\u0006\u00c8\u00fa"));
+    assertThat(bytes, containsString("Billie Piper"));
+
+    given()
+        .header("Accept-Encoding", "gzip")
+        .when().get("/accounts")
+        .then()
+        .statusCode(200)
+        .header("Content-Encoding", "gzip")
+        .body("accountNumber", hasItem(444666));
+  }
+
   @Test
   void testGetAccountFailure() {
     given()
@@ -250,5 +550,31 @@ class AccountJpaResourceTest {
         .then()
         .statusCode(400);
   }
-}
 
+  @Test
+  void testCreateDuplicateAccount() {
+    AccountJpa newAccount = new AccountJpa();
+    newAccount.setAccountNumber(123456789L);
+    newAccount.setCustomerNumber(12345L);
+    newAccount.setCustomerName("Debbie Hall");
+    newAccount.setBalance(new BigDecimal("100.00"));
+
+    given()
+        .contentType(ContentType.JSON)
+        .body(newAccount)
+        .when().post("/accounts")
+        .then()
+        .statusCode(409)
+        .body("error", equalTo("Account with 123456789 already exists."));
+  }
+
+  @Test
+  void testCreateLedgerAccountFailure() {
+    given()
+        .contentType(ContentType.JSON)
+        .body("{\"accountNumber\":5432167,\"customerNumber\":98765}")
+        .when().post("/accounts-ledger")
+        .then()
+        .statusCode(400);
+  }
+}